@@ -50,7 +50,15 @@ public class Edigen {
             new Argument("iu", "Ignore unused rules", IGNORE_UNUSED_RULES),
             new Argument("do", "Write generated decoder file to <directory>", DECODER_DIRECTORY),
             new Argument("dt", "Use <template> for decoder instead of the default one",
-                    DECODER_TEMPLATE)
+                    DECODER_TEMPLATE),
+            new Argument("tb", "Generate a table-driven decoder instead of nested switch methods",
+                    DECODER_TABLES),
+            new Argument("us", "Let the decoder read units of <bits> bits at once (at most 64)",
+                    UNIT_SIZE),
+            new Argument("ts", "Generate a thread-safe decoder (with decoding state per call)",
+                    THREAD_SAFE_DECODER),
+            new Argument("cr", "Print a report of assigned encodings of the first instruction bits",
+                    COVERAGE_REPORT)
     };
 
     /**
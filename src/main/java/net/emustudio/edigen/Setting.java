@@ -65,5 +65,21 @@ public enum Setting {
     /**
      * Ignore unused rules. If enabled, detection of unused rules will be turned off.
      */
-    IGNORE_UNUSED_RULES
+    IGNORE_UNUSED_RULES,
+    /**
+     * If set, the decoder will walk static lookup tables instead of calling one generated method per rule.
+     */
+    DECODER_TABLES,
+    /**
+     * The number of bits which the decoder reads at once (32 by default, at most 64).
+     */
+    UNIT_SIZE,
+    /**
+     * If set, one instance of the generated decoder can be shared by multiple threads.
+     */
+    THREAD_SAFE_DECODER,
+    /**
+     * If set, the assigned encodings of the first instruction bits will be printed.
+     */
+    COVERAGE_REPORT
 }
@@ -20,6 +20,7 @@ package net.emustudio.edigen;
 
 import net.emustudio.edigen.generation.DecoderGenerator;
 import net.emustudio.edigen.generation.DisassemblerGenerator;
+import net.emustudio.edigen.nodes.Decoder;
 import net.emustudio.edigen.nodes.Specification;
 import net.emustudio.edigen.parser.ParseException;
 import net.emustudio.edigen.parser.Parser;
@@ -66,16 +67,25 @@ public class Translator {
             Specification specification = parser.parse();
             transform(specification);
 
+            if (settings.containsKey(COVERAGE_REPORT)) {
+                DetectOpcodeCoverageVisitor coverage = new DetectOpcodeCoverageVisitor();
+                specification.getDecoder().accept(coverage);
+                System.out.print(coverage.getReport());
+            }
+
             DecoderGenerator decoder = new DecoderGenerator(
                     specification.getDecoder(),
                     settings.get(DECODER_NAME)
             );
             decoder.setOutputDirectory(settings.get(DECODER_DIRECTORY));
             decoder.setTemplateFile(settings.get(DECODER_TEMPLATE));
+            decoder.setTableDriven(settings.containsKey(DECODER_TABLES));
+            decoder.setThreadSafe(settings.containsKey(THREAD_SAFE_DECODER));
             decoder.generate();
 
             DisassemblerGenerator disassembler = new DisassemblerGenerator(
                     specification.getDisassembler(),
+                    specification.getDecoder(),
                     settings.get(DISASSEMBLER_NAME),
                     settings.get(DECODER_NAME)
             );
@@ -92,6 +102,10 @@ public class Translator {
      * @throws SemanticException when a semantic error occurs
      */
     private void transform(Specification specification) throws SemanticException {
+        if (settings.containsKey(UNIT_SIZE)) {
+            setUnitSize(specification.getDecoder(), settings.get(UNIT_SIZE));
+        }
+
         Visitor detectUnusedRulesVisitor;
         if (settings.containsKey(IGNORE_UNUSED_RULES)) {
             detectUnusedRulesVisitor = new Visitor() {
@@ -113,7 +127,8 @@ public class Translator {
                 new DetectAmbiguousVisitor(),
                 new NarrowMasksVisitor(),
                 new RemoveUnreachablePatternsVisitor(),
-                new DetectUnreachableFormatsVisitor()
+                new DetectUnreachableFormatsVisitor(),
+                new MergeRootRulesVisitor()
         };
 
         if (settings.containsKey(DEBUG))
@@ -126,4 +141,22 @@ public class Translator {
                 specification.dump(DEBUG_STREAM);
         }
     }
+
+    /**
+     * Sets the decoder unit size given as a string.
+     *
+     * @param decoder  the decoder node
+     * @param unitSize the number of bits
+     * @throws SemanticException when the unit size is not a number in the allowed range
+     */
+    private void setUnitSize(Decoder decoder, String unitSize) throws SemanticException {
+        try {
+            decoder.setUnitSize(Integer.parseInt(unitSize));
+        } catch (IllegalArgumentException ex) {
+            throw new SemanticException(
+                    "Invalid unit size \"" + unitSize + "\": must be between 1 and " + Decoder.MAX_UNIT_SIZE_BITS,
+                    decoder
+            );
+        }
+    }
 }
@@ -22,6 +22,7 @@ import net.emustudio.edigen.SemanticException;
 import net.emustudio.edigen.misc.Template;
 import net.emustudio.edigen.nodes.Decoder;
 import net.emustudio.edigen.nodes.Rule;
+import net.emustudio.edigen.passes.DetectOpcodeCoverageVisitor;
 
 import java.io.StringWriter;
 import java.io.Writer;
@@ -33,6 +34,8 @@ import java.io.Writer;
 public class DecoderGenerator extends Generator {
 
     private final Decoder decoder;
+    private boolean tableDriven;
+    private boolean threadSafe;
 
     /**
      * Constructs the instruction decoder generator.
@@ -45,10 +48,27 @@ public class DecoderGenerator extends Generator {
         this.decoder = decoder;
     }
 
+    /**
+     * Sets whether the decoder should interpret static lookup tables instead
+     * of calling one generated method per rule.
+     * @param tableDriven true if the table-driven decoder should be generated
+     */
+    public void setTableDriven(boolean tableDriven) {
+        this.tableDriven = tableDriven;
+    }
+
+    /**
+     * Sets whether one instance of the decoder can be used by multiple threads.
+     * @param threadSafe true if the decoder should create its decoding state per call
+     */
+    public void setThreadSafe(boolean threadSafe) {
+        this.threadSafe = threadSafe;
+    }
+
     /**
      * Fills the template with variables and the generated code.
      * @param template the template object
-     * @throws SemanticException never
+     * @throws SemanticException if a mask or a returned value is too long
      */
     @Override
     protected void fillTemplate(Template template) throws SemanticException {
@@ -56,25 +76,54 @@ public class DecoderGenerator extends Generator {
 
         template.setVariable("decoder_package", getPackageName());
         template.setVariable("decoder_class", getClassName());
-
-        Rule rootRule = decoder.getRootRule();
-        if (rootRule.hasOnlyOneName()) {
-            template.setVariable("root_rule", rootRule.getMethodName() + "(0)");
-        } else {
-            template.setVariable("root_rule", rootRule.getMethodName() + "(0, " + rootRule.getFieldName() + ")");
-        }
+        template.setVariable("thread_safe", Boolean.toString(threadSafe));
 
         Writer fields = new StringWriter();
-        decoder.accept(new GenerateFieldsVisitor(fields));
+        GenerateFieldsVisitor fieldsVisitor = new GenerateFieldsVisitor(fields);
+        decoder.accept(fieldsVisitor);
         template.setVariable("decoder_fields", fields.toString());
+        template.setVariable("decoder_field_count", Integer.toString(fieldsVisitor.getFieldCount()));
 
         Writer methods = new StringWriter();
-        decoder.accept(new GenerateMethodsVisitor(methods));
+        if (tableDriven) {
+            GenerateTablesVisitor tablesVisitor = new GenerateTablesVisitor(methods, getClassName());
+            decoder.accept(tablesVisitor);
+            template.setVariable("root_rule", tablesVisitor.getRootRuleCall());
+        } else {
+            Rule rootRule = decoder.getRootRule();
+            if (rootRule.hasOnlyOneName()) {
+                template.setVariable("root_rule", rootRule.getMethodName() + "(0)");
+            } else {
+                template.setVariable("root_rule", rootRule.getMethodName() + "(0, " + rootRule.getFieldName() + ")");
+            }
+            decoder.accept(new GenerateMethodsVisitor(methods));
+        }
         template.setVariable("decoder_methods", methods.toString());
 
         Writer maxInstructionBytes = new StringWriter();
         decoder.accept(new GenerateMaxInstructionBytes(maxInstructionBytes));
         template.setVariable("max_instruction_bytes", maxInstructionBytes.toString());
+
+        DetectOpcodeCoverageVisitor coverageVisitor = new DetectOpcodeCoverageVisitor();
+        decoder.accept(coverageVisitor);
+        template.setVariable("coverage_bits", Integer.toString(coverageVisitor.getCoverageBits()));
+        template.setVariable("assigned_encodings", formatWords(coverageVisitor.getAssigned()));
+    }
+
+    /**
+     * Formats the words of a bit map as an array initializer, four words per line.
+     * @param words the bit map
+     * @return the comma-separated hexadecimal literals
+     */
+    private static String formatWords(long[] words) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < words.length; i++) {
+            if (i > 0) {
+                result.append((i % 4 == 0) ? ",\n" : ", ");
+            }
+            result.append(String.format("0x%016XL", words[i]));
+        }
+        return result.toString();
     }
 
 }
@@ -20,6 +20,7 @@ package net.emustudio.edigen.generation;
 
 import net.emustudio.edigen.SemanticException;
 import net.emustudio.edigen.misc.Template;
+import net.emustudio.edigen.nodes.Decoder;
 import net.emustudio.edigen.nodes.Disassembler;
 
 import java.io.StringWriter;
@@ -31,26 +32,29 @@ import java.io.Writer;
 public class DisassemblerGenerator extends Generator {
 
     private final Disassembler disassembler;
+    private final Decoder decoder;
     private final String decoderName;
 
     /**
      * Constructs the disassembler generator.
      * @param disassembler the disassembler node
+     * @param decoder the decoder node, whose variants declare the control flow
      * @param disassemblerName the resulting package + class name
      * @param decoderName the package + class name of the decoder
      */
-    public DisassemblerGenerator(Disassembler disassembler,
+    public DisassemblerGenerator(Disassembler disassembler, Decoder decoder,
             String disassemblerName, String decoderName) {
         super("/Disassembler.edt", disassemblerName);
 
         this.disassembler = disassembler;
+        this.decoder = decoder;
         this.decoderName = decoderName;
     }
 
     /**
      * Fills the template with variables and the generated code.
      * @param template the template object
-     * @throws SemanticException never
+     * @throws SemanticException if the variants declare conflicting control flows
      */
     @Override
     protected void fillTemplate(Template template) throws SemanticException {
@@ -67,6 +71,16 @@ public class DisassemblerGenerator extends Generator {
         Writer values = new StringWriter();
         disassembler.accept(new GenerateParametersVisitor(values));
         template.setVariable("disasm_parameters", values.toString());
+
+        Writer strategies = new StringWriter();
+        GenerateStrategiesVisitor strategiesVisitor = new GenerateStrategiesVisitor(strategies);
+        decoder.accept(strategiesVisitor);
+        disassembler.accept(strategiesVisitor);
+        template.setVariable("disasm_strategies", strategies.toString());
+
+        Writer flow = new StringWriter();
+        decoder.accept(new GenerateFlowVisitor(flow));
+        template.setVariable("disasm_flow", flow.toString());
     }
 
 }
@@ -0,0 +1,83 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.generation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A disassembler format string split into literal segments and placeholders.
+ * <p>
+ * The i-th placeholder (a percent sign followed by a conversion character) is
+ * located between the i-th and (i+1)-th literal segment, so there is always
+ * one more literal than placeholders. Only the first placeholders, up to the
+ * number of format parameters, are recognized; further percent signs are left
+ * in the literals.
+ * <p>
+ * The format string is processed as written in the specification, so the
+ * literals and conversions may contain Java escape sequences.
+ */
+final class FormatSegments {
+
+    private final List<String> literals = new ArrayList<>();
+    private final List<String> conversions = new ArrayList<>();
+
+    /**
+     * Splits the format string.
+     * @param formatString the format string, as written in the specification
+     * @param parameterCount the number of format parameters
+     */
+    FormatSegments(String formatString, int parameterCount) {
+        int start = 0;
+        int position = formatString.indexOf('%');
+
+        while (position != -1 && position + 1 < formatString.length() && conversions.size() < parameterCount) {
+            int end = position + 2;
+            if (formatString.charAt(position + 1) == '\\' && end < formatString.length()) {
+                end += formatString.charAt(end) == 'u' ? 5 : 1;
+                end = Math.min(end, formatString.length());
+            }
+
+            literals.add(formatString.substring(start, position));
+            conversions.add(formatString.substring(position + 1, end));
+            start = end;
+            position = formatString.indexOf('%', start);
+        }
+
+        literals.add(formatString.substring(start));
+    }
+
+    /**
+     * Returns the literal segments.
+     * @return the list of literals, one more than the number of placeholders
+     */
+    List<String> getLiterals() {
+        return literals;
+    }
+
+    /**
+     * Returns the conversion characters of the placeholders.
+     * <p>
+     * A conversion is usually one character, or an escape sequence.
+     * @return the list of conversions
+     */
+    List<String> getConversions() {
+        return conversions;
+    }
+}
@@ -51,6 +51,17 @@ public class GenerateFieldsVisitor extends Visitor {
         this.printer = new PrettyPrinter(writer);
     }
 
+    /**
+     * Returns the number of generated constants.
+     * <p>
+     * Valid after the decoder node was visited. The constants are numbered
+     * from 1, so this is also the value of the highest constant.
+     * @return the number of constants
+     */
+    public int getFieldCount() {
+        return fields.size();
+    }
+
     /**
      * Writes the constants.
      * @param decoder the decoder node
@@ -87,10 +98,16 @@ public class GenerateFieldsVisitor extends Visitor {
     /**
      * Adds the field to the list and sets the flag if the variant returns
      * something.
+     *
+     * Variants merged from other root rules are skipped, they are counted
+     * in their original rule.
      * @param variant the variant node
      */
     @Override
     public void visit(Variant variant) {
+        if (variant.getOwner() != null)
+            return;
+
         if (variant.getFieldName() != null)
             fields.add(variant.getFieldName());
 
@@ -0,0 +1,146 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.generation;
+
+import net.emustudio.edigen.SemanticException;
+import net.emustudio.edigen.Visitor;
+import net.emustudio.edigen.misc.PrettyPrinter;
+import net.emustudio.edigen.nodes.Decoder;
+import net.emustudio.edigen.nodes.Flow;
+import net.emustudio.edigen.nodes.Rule;
+import net.emustudio.edigen.nodes.Variant;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A visitor which generates Java source code reporting the successors of an
+ * instruction, according to the control flow declared for the variants.
+ * <p>
+ * For each rule containing a variant with a declared flow, a
+ * <code>switch</code> statement on the variant constant stored under the rule
+ * key is generated. A matching case reports the successors and returns;
+ * otherwise, the code following the generated statements is executed.
+ */
+public class GenerateFlowVisitor extends Visitor {
+
+    private final PrettyPrinter printer;
+    private final Map<String, Map<String, Flow>> flows = new LinkedHashMap<>();
+    private Rule currentRule;
+
+    /**
+     * Constucts the visitor.
+     * @param writer the output stream to write the code to
+     */
+    public GenerateFlowVisitor(Writer writer) {
+        this.printer = new PrettyPrinter(writer);
+    }
+
+    /**
+     * Collects the flows of all variants and writes the statements.
+     * @param decoder the decoder node
+     * @throws SemanticException if variants returning the same string in the
+     *         same rule declare different flows
+     */
+    @Override
+    public void visit(Decoder decoder) throws SemanticException {
+        decoder.acceptChildren(this);
+
+        for (Map.Entry<String, Map<String, Flow>> rule : flows.entrySet()) {
+            printer.writeLine("switch (variantOf(instruction, " + rule.getKey() + ")) {");
+            for (Map.Entry<String, Flow> variant : rule.getValue().entrySet()) {
+                printer.writeLine("case " + variant.getKey() + ":");
+                writeSuccessors(variant.getValue());
+            }
+            printer.writeLine("}");
+        }
+    }
+
+    /**
+     * Remembers the rule whose variants are visited.
+     * @param rule the rule node
+     * @throws SemanticException never
+     */
+    @Override
+    public void visit(Rule rule) throws SemanticException {
+        currentRule = rule;
+        rule.acceptChildren(this);
+    }
+
+    /**
+     * Remembers the flow of the variant under all keys the variant constant
+     * can be stored with.
+     * <p>
+     * The variants are copied while the decoding tree is built, so the same
+     * flow is usually found multiple times.
+     * @param variant the variant node
+     * @throws SemanticException if the flow differs from the flow of another
+     *         variant returning the same string in the same rule
+     */
+    @Override
+    public void visit(Variant variant) throws SemanticException {
+        Flow flow = variant.getFlow();
+        if (flow == null || variant.getReturnString() == null) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>();
+        if (variant.getOwner() != null) {
+            keys.add(variant.getOwner().getFieldName());
+        } else {
+            for (String name : currentRule.getNames()) {
+                keys.add(currentRule.getFieldName(name));
+            }
+        }
+
+        for (String key : keys) {
+            Flow previous = flows.computeIfAbsent(key, k -> new LinkedHashMap<>())
+                    .putIfAbsent(variant.getFieldName(), flow);
+
+            if (previous != null && !previous.equals(flow)) {
+                throw new SemanticException("Variants returning \"" + variant.getReturnString()
+                        + "\" declare different control flows " + previous + " and " + flow, variant);
+            }
+        }
+    }
+
+    private void writeSuccessors(Flow flow) {
+        if (flow.getKind() == Flow.Kind.BRANCH) {
+            printer.writeLine("successors.accept(nextPosition);");
+        }
+
+        if (flow.getTarget() != null) {
+            String strategy = flow.getStrategies().isEmpty() ? "null"
+                    : "Strategy::" + GenerateStrategiesVisitor.getMethodName(flow.getStrategies());
+            String field = flow.getTarget().getFieldName();
+
+            if (flow.isRelative()) {
+                printer.writeLine("successors.accept(relativeTarget(instruction, " + field + ", "
+                        + strategy + ", nextPosition));");
+            } else {
+                printer.writeLine("successors.accept(absoluteTarget(instruction, " + field + ", "
+                        + strategy + "));");
+            }
+        }
+        printer.writeLine("return;");
+    }
+}
@@ -27,6 +27,7 @@ import net.emustudio.edigen.nodes.TreeNode;
 
 import java.io.Writer;
 import java.util.Iterator;
+import java.util.stream.Collectors;
 
 /**
  * A visitor which generates the code of the array of disassembler formats.
@@ -62,12 +63,17 @@ public class GenerateFormatsVisitor extends Visitor {
     }
 
     /**
-     * Saves the format string in the quotes into the variable.
+     * Saves the format string, split into the literal segments and the
+     * conversion characters of the placeholders, into the variable.
      * @param format the format node
      */
     @Override
     public void visit(Format format) {
-        formatString = '"' + format.getFormatString() + '"';
+        FormatSegments segments = new FormatSegments(format.getFormatString(), format.getChildren().size());
+        String literals = segments.getLiterals().stream()
+                .map(literal -> '"' + literal + '"')
+                .collect(Collectors.joining(", ", "new String[] {", "}"));
+        formatString = "new Segments(" + literals + ", \"" + String.join("", segments.getConversions()) + "\")";
     }
 
 }
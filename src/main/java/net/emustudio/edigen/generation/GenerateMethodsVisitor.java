@@ -26,8 +26,6 @@ import net.emustudio.edigen.nodes.*;
 import java.io.Writer;
 import java.util.*;
 
-import static net.emustudio.edigen.nodes.Decoder.UNIT_SIZE_BITS;
-
 /**
  * A visitor which generates Java source code of the instruction decoder methods
  * for all rules.
@@ -39,6 +37,7 @@ public class GenerateMethodsVisitor extends Visitor {
     private Rule ruleToTry;
     private Rule currentRule;
     private boolean isDefaultCase = false;
+    private int unitSize;
 
     private boolean unitWasRead;
     private int unitLastStart;
@@ -56,10 +55,12 @@ public class GenerateMethodsVisitor extends Visitor {
      * Finds out which root rules are available.
      *
      * @param decoder decoder node
-     * @throws SemanticException never
+     * @throws SemanticException if a mask or a returned value is longer than the unit size
      */
     @Override
     public void visit(Decoder decoder) throws SemanticException {
+        unitSize = decoder.getUnitSize();
+
         List<Rule> rootRulesToTry = new ArrayList<>(decoder.getRootRules());
         rootRulesToTry.remove(0);
         rootRulesLeft.addAll(rootRulesToTry);
@@ -94,55 +95,100 @@ public class GenerateMethodsVisitor extends Visitor {
     /**
      * Writes the unit reading code and if the mask is not zero-only, also
      * writes the <code>switch</code> statement.
+     * <p>
+     * Masks longer than <code>int</code> are read into a <code>long</code>
+     * and matched by an <code>if</code> chain instead, since Java does not
+     * support switching on a <code>long</code>.
      * @param mask the mask node
-     * @throws SemanticException never
+     * @throws SemanticException if the mask is longer than the unit size
      */
     @Override
     public void visit(Mask mask) throws SemanticException {
         boolean isZero = mask.getBits().containsOnly(false);
         int maskStart = mask.getStart();
         int maskLength = mask.getBits().getLength();
+        boolean isWide = maskLength > Integer.SIZE;
         boolean alreadyRead = unitWasRead && unitLastStart == maskStart && unitLastLength == maskLength;
 
         if (!isDefaultCase && !isZero && !alreadyRead) {
-            if (maskLength > UNIT_SIZE_BITS) {
+            if (maskLength > unitSize) {
                 throw new SemanticException(
-                        String.format("Mask length %d is over maximum %d bits", maskLength, UNIT_SIZE_BITS),
+                        String.format("Mask length %d is over maximum %d bits", maskLength, unitSize),
                         mask
                 );
             }
-            if (maskStart == 0) {
-                put(String.format("unit = readBits(start, %d);", maskLength), true);
-            } else {
-                put(String.format("unit = readBits(start + %d, %d);", maskStart, maskLength), true);
-            }
-            unitWasRead = true;
+            put(String.format("%s = %s(%s, %d);", isWide ? "wideUnit" : "unit", isWide ? "readLongBits" : "readBits",
+                    offset(maskStart), maskLength), true);
+            unitWasRead = !isWide;
             unitLastStart = maskStart;
             unitLastLength = maskLength;
         }
 
         isDefaultCase = false;
 
-        if (!isZero)
+        if (isZero) {
+            mask.acceptChildren(this);
+        } else if (isWide) {
+            visitWideMask(mask);
+        } else {
             put("switch (unit & 0x" + mask.getBits().toHexadecimal() + ") {");
+            mask.acceptChildren(this);
 
-        mask.acceptChildren(this);
+            if (!isDefaultCase) {
+                put("default:");
+                putDefault();
+            }
+            put("}");
+        }
+    }
 
-        if (!isZero && !isDefaultCase) {
-            put("default:");
-            if (ruleToTry != null) {
-                if (ruleToTry.hasOnlyOneName()) {
-                    put(ruleToTry.getMethodName() + "(0);");
-                } else {
-                    put(ruleToTry.getMethodName() + "(0, " + ruleToTry.getFieldName() + ");");
-                }
+    /**
+     * Writes the <code>if</code> chain matching the patterns of a mask longer
+     * than <code>int</code>.
+     * @param mask the mask node
+     * @throws SemanticException if a mask is longer than the unit size
+     */
+    private void visitWideMask(Mask mask) throws SemanticException {
+        String maskValue = "0x" + mask.getBits().toHexadecimal() + "L";
+        Pattern defaultPattern = null;
+        String condition = "if";
+
+        for (TreeNode child : mask.getChildren()) {
+            Pattern pattern = (Pattern) child;
+            if (pattern.getBits().getLength() == 0) {
+                defaultPattern = pattern;
             } else {
-                put("throw new InvalidInstructionException();");
+                put(String.format("%s ((wideUnit & %s) == 0x%sL) {",
+                        condition, maskValue, pattern.getBits().toHexadecimal()));
+                pattern.acceptChildren(this);
+                condition = "} else if";
             }
         }
 
-        if (!isZero)
-            put("}");
+        put("} else {");
+        if (defaultPattern != null) {
+            defaultPattern.acceptChildren(this);
+        } else {
+            putDefault();
+        }
+        put("}");
+        isDefaultCase = true;
+    }
+
+    /**
+     * Writes the code executed when no pattern matches: either an invocation
+     * of the next root rule, or throwing of an exception.
+     */
+    private void putDefault() {
+        if (ruleToTry != null) {
+            if (ruleToTry.hasOnlyOneName()) {
+                put(ruleToTry.getMethodName() + "(0);");
+            } else {
+                put(ruleToTry.getMethodName() + "(0, " + ruleToTry.getFieldName() + ");");
+            }
+        } else {
+            put("throw new InvalidInstructionException();");
+        }
     }
 
     /**
@@ -168,38 +214,36 @@ public class GenerateMethodsVisitor extends Visitor {
     /**
      * Writes the code for the recognized variant.
      * @param variant the variant node
-     * @throws SemanticException never
+     * @throws SemanticException if the returned subrule is longer than the unit size
      */
     @Override
     public void visit(Variant variant) throws SemanticException {
         if (variant.returns()) {
             String field = "rule";
-            String value;
+            Rule owner = variant.getOwner();
 
-            if (currentRule.hasOnlyOneName())
+            if (owner != null)
+                field = owner.getFieldName();
+            else if (currentRule.hasOnlyOneName())
                 field = currentRule.getFieldName(currentRule.getNames().get(0));
 
             if (variant.getReturnString() != null) {
-                value = '"' + variant.getReturnString() + "\", " + variant.getFieldName();
-                put(String.format("instruction.add(%s, %s);", field, value));
+                put(String.format("putString(%s, \"%s\", %s);",
+                        field, variant.getReturnString(), variant.getFieldName()));
             } else {
                 int start = variant.getReturnSubrule().getStart();
                 int length = variant.getReturnSubrule().getLength();
-                if (length > UNIT_SIZE_BITS) {
+                if (length > unitSize) {
                     throw new SemanticException(
                             String.format(
                                     "Sub-rule %s length %d is over maximum %d bits",
-                                    variant.getReturnSubrule().getName(), length, UNIT_SIZE_BITS),
+                                    variant.getReturnSubrule().getName(), length, unitSize),
                             variant
                     );
                 }
 
-                if (start == 0) {
-                    value = String.format("readBits(start, %d)", length);
-                } else {
-                    value = String.format("readBits(start + %d, %d)", start, length);
-                }
-                put(String.format("instruction.add(%s, %s, %d);", field, value, length));
+                String method = length > Integer.SIZE ? "putLongBits" : "putBits";
+                put(String.format("%s(%s, %s, %d);", method, field, offset(start), length));
             }
         }
 
@@ -230,6 +274,15 @@ public class GenerateMethodsVisitor extends Visitor {
         }
     }
 
+    /**
+     * Returns the expression of the bit position relative to the rule start.
+     * @param start the number of bits from the rule start
+     * @return the Java expression
+     */
+    private static String offset(int start) {
+        return (start == 0) ? "start" : "start + " + start;
+    }
+
     /**
      * Puts the line of source code into the prettifier, which writes it into
      * the output stream.
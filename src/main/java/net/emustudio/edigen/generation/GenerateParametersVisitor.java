@@ -28,7 +28,6 @@ import net.emustudio.edigen.nodes.Value;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.util.Iterator;
-import java.util.stream.Collectors;
 
 /**
  * A visitor which generates the code of the two-dimensional array of
@@ -87,16 +86,15 @@ public class GenerateParametersVisitor extends Visitor {
     }
 
     /**
-     * Writes the name of the field for the disassembler parameter.
+     * Writes the name of the field and the strategy method references for the
+     * disassembler parameter: the primitive one and the Bits one.
      * @param value the value node (the parameter)
      * @throws SemanticException never
      */
     @Override
     public void visit(Value value) throws SemanticException {
-        String strategies = value.getStrategies().stream()
-                .map(s -> "Strategy::" + s)
-                .collect(Collectors.joining(","));
-        writer.print("new Parameter(" + value.getFieldName()
-                + ", List.of(" + strategies + "))");
+        String strategy = value.getStrategies().isEmpty() ? "null"
+                : "Strategy::" + GenerateStrategiesVisitor.getMethodName(value.getStrategies());
+        writer.print("new Parameter(" + value.getFieldName() + ", " + strategy + ", " + strategy + ")");
     }
 }
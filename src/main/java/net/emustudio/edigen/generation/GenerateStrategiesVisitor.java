@@ -0,0 +1,123 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.generation;
+
+import net.emustudio.edigen.SemanticException;
+import net.emustudio.edigen.Visitor;
+import net.emustudio.edigen.misc.PrettyPrinter;
+import net.emustudio.edigen.nodes.Disassembler;
+import net.emustudio.edigen.nodes.Flow;
+import net.emustudio.edigen.nodes.Value;
+import net.emustudio.edigen.nodes.Variant;
+
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A visitor which generates static methods for each chain of multiple
+ * decoding strategies used by the disassembler parameters and by the control
+ * flow targets. The decoder node, if visited, must be visited before the
+ * disassembler node.
+ * <p>
+ * The methods apply the strategies in the left-to-right order by direct
+ * calls, so no list of strategies is iterated at runtime. Each chain gets two
+ * overloads: one working on a primitive value of the given bit length, used
+ * for values the decoder keeps as primitives, and one working on Bits, used
+ * for the other decoded instructions.
+ */
+public class GenerateStrategiesVisitor extends Visitor {
+
+    private final PrettyPrinter printer;
+    private final Set<List<String>> chains = new LinkedHashSet<>();
+
+    /**
+     * Constucts the visitor.
+     * @param writer the output stream to write the code to
+     */
+    public GenerateStrategiesVisitor(Writer writer) {
+        this.printer = new PrettyPrinter(writer);
+    }
+
+    /**
+     * Returns the name of the method which applies the given strategies.
+     * <p>
+     * A single strategy is applied by its own method; a chain of strategies
+     * by the generated fused method.
+     * @param strategies the strategy names, in the order of application
+     * @return the method name
+     */
+    public static String getMethodName(List<String> strategies) {
+        if (strategies.size() == 1) {
+            return strategies.get(0);
+        }
+        return "fused_" + String.join("__", strategies);
+    }
+
+    /**
+     * Collects the strategy chains and writes the fused methods of both kinds.
+     * @param disassembler the disassembler node
+     * @throws SemanticException never
+     */
+    @Override
+    public void visit(Disassembler disassembler) throws SemanticException {
+        disassembler.acceptChildren(this);
+
+        for (List<String> chain : chains) {
+            String longCall = "value";
+            String bitsCall = "bits";
+            for (String strategy : chain) {
+                longCall = strategy + "(" + longCall + ", bitLength)";
+                bitsCall = strategy + "(" + bitsCall + ")";
+            }
+
+            printer.writeLine("public static long " + getMethodName(chain) + "(long value, int bitLength) {");
+            printer.writeLine("return " + longCall + ";");
+            printer.writeLine("}");
+            printer.writeLine("public static Bits " + getMethodName(chain) + "(Bits bits) {");
+            printer.writeLine("return " + bitsCall + ";");
+            printer.writeLine("}");
+        }
+    }
+
+    /**
+     * Remembers the strategy chain of the control flow target, if it has more
+     * than one strategy.
+     * @param variant the variant node
+     */
+    @Override
+    public void visit(Variant variant) {
+        Flow flow = variant.getFlow();
+        if (flow != null && flow.getStrategies().size() > 1) {
+            chains.add(flow.getStrategies());
+        }
+    }
+
+    /**
+     * Remembers the strategy chain of the parameter, if it has more than one strategy.
+     * @param value the value node (the parameter)
+     */
+    @Override
+    public void visit(Value value) {
+        if (value.getStrategies().size() > 1) {
+            chains.add(value.getStrategies());
+        }
+    }
+}
@@ -0,0 +1,561 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.generation;
+
+import net.emustudio.edigen.SemanticException;
+import net.emustudio.edigen.Visitor;
+import net.emustudio.edigen.misc.BitSequence;
+import net.emustudio.edigen.misc.PrettyPrinter;
+import net.emustudio.edigen.nodes.*;
+
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * A visitor which generates a table-driven instruction decoder.
+ * <p>
+ * Instead of one method per rule, the whole decoding tree is lowered into one
+ * static <code>int[]</code> program which is walked by a small interpreter
+ * loop. The program consists of these nodes:
+ * <ul>
+ * <li><code>FAIL</code> - throws the invalid instruction exception (always at
+ * index 0, so the zero target means "no match")</li>
+ * <li><code>DENSE offset length mask shift targets...</code> - reads a unit and
+ * jumps to the target indexed by the masked bits shifted to the right</li>
+ * <li><code>SPARSE offset length mask count default keys... targets...</code> -
+ * reads a unit and binary-searches the sorted patterns (used when a dense
+ * table would be too big)</li>
+ * <li><code>WIDE offset length mask count default keys... targets...</code> -
+ * like <code>SPARSE</code>, but for masks longer than <code>int</code>; the
+ * mask and keys are stored as pairs of the high and low 32 bits</li>
+ * <li><code>STRING field string constant</code>, <code>BITS field offset
+ * length</code>, <code>WIDE_BITS field offset length</code> - adds the
+ * variant's return value to the instruction</li>
+ * <li><code>CALL rule offset field</code> - decodes a subrule</li>
+ * <li><code>FALLBACK rule field</code> - tries the next root rule</li>
+ * <li><code>RETURN</code> - ends the current rule</li>
+ * </ul>
+ * Field operands equal to zero stand for the rule name passed by the caller
+ * (rule constants start at 1).
+ */
+public class GenerateTablesVisitor extends Visitor {
+
+    /**
+     * Masks with at most this number of bits between the lowest and highest
+     * set bit are always stored as dense tables.
+     */
+    private static final int DENSE_SPAN_BITS = 8;
+
+    /**
+     * Maximal allowed ratio of dense table size to the number of patterns for
+     * masks wider than {@link #DENSE_SPAN_BITS}.
+     */
+    private static final int DENSE_FILL_RATIO = 4;
+
+    private static final int VALUES_PER_LINE = 16;
+
+    private final PrettyPrinter printer;
+    private final String className;
+
+    private final List<String> cells = new ArrayList<>();
+    private final Map<Integer, String> comments = new TreeMap<>();
+    private final Map<Rule, Integer> entries = new HashMap<>();
+    private final Map<Integer, Rule> ruleReferences = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    private final List<Rule> rootRules = new ArrayList<>();
+    private int unitSize;
+    private Rule currentRule;
+    private int fallbackNode;
+    private int lastNode;
+
+    /**
+     * Constructs the visitor.
+     * @param output the output stream to write the code to
+     * @param className the decoder class name, used to qualify the rule constants
+     */
+    public GenerateTablesVisitor(Writer output, String className) {
+        this.printer = new PrettyPrinter(output);
+        this.className = className;
+    }
+
+    /**
+     * Returns the invocation of the interpreter for the first root rule.
+     * <p>
+     * Valid after the decoder node was visited.
+     * @return the Java statement without the trailing semicolon
+     */
+    public String getRootRuleCall() {
+        Rule rootRule = rootRules.get(0);
+        return "interpret(" + entries.get(rootRule) + ", 0, " + getRootField(rootRule) + ")";
+    }
+
+    /**
+     * Lowers all rules into the program and writes the tables together with
+     * the interpreter.
+     * @param decoder the decoder node
+     * @throws SemanticException if a mask is too long
+     */
+    @Override
+    public void visit(Decoder decoder) throws SemanticException {
+        rootRules.addAll(decoder.getRootRules());
+        unitSize = decoder.getUnitSize();
+
+        comments.put(0, "no match");
+        cells.add("FAIL");
+
+        decoder.acceptChildren(this);
+
+        for (Map.Entry<Integer, Rule> reference : ruleReferences.entrySet()) {
+            cells.set(reference.getKey(), String.valueOf(entries.get(reference.getValue())));
+        }
+
+        writeTables();
+        writeInterpreter();
+    }
+
+    /**
+     * Lowers the rule and remembers its entry node.
+     * @param rule the rule node
+     * @throws SemanticException if a mask is too long
+     */
+    @Override
+    public void visit(Rule rule) throws SemanticException {
+        currentRule = rule;
+        fallbackNode = 0;
+
+        int rootIndex = rootRules.indexOf(rule);
+        if (rootIndex != -1 && rootIndex + 1 < rootRules.size()) {
+            Rule nextRoot = rootRules.get(rootIndex + 1);
+            fallbackNode = cells.size();
+            comments.put(fallbackNode, "try root rule " + nextRoot.getLabel());
+            cells.add("FALLBACK");
+            addRuleReference(nextRoot);
+            cells.add(getRootField(nextRoot));
+        }
+
+        rule.acceptChildren(this);
+        entries.put(rule, lastNode);
+        comments.merge(lastNode, "rule " + rule.getLabel(), (old, label) -> label + ", " + old);
+    }
+
+    /**
+     * Writes the switch node, or just the child node if the mask is zero-only.
+     * @param mask the mask node
+     * @throws SemanticException if the mask is too long
+     */
+    @Override
+    public void visit(Mask mask) throws SemanticException {
+        BitSequence bits = mask.getBits();
+        if (bits.containsOnly(false)) {
+            mask.acceptChildren(this);
+            return;
+        }
+
+        int maskLength = bits.getLength();
+        if (maskLength > unitSize) {
+            throw new SemanticException(
+                    String.format("Mask length %d is over maximum %d bits", maskLength, unitSize),
+                    mask
+            );
+        }
+        if (maskLength > Integer.SIZE) {
+            visitWideMask(mask);
+            return;
+        }
+
+        int maskValue = toInt(bits);
+        int shift = Integer.numberOfTrailingZeros(maskValue);
+        int span = Integer.SIZE - Integer.numberOfLeadingZeros(maskValue) - shift;
+
+        Pattern defaultPattern = null;
+        SortedMap<Integer, Pattern> patterns = new TreeMap<>();
+        for (TreeNode child : mask.getChildren()) {
+            Pattern pattern = (Pattern) child;
+            if (pattern.getBits().getLength() == 0) {
+                defaultPattern = pattern;
+            } else {
+                patterns.put(toInt(pattern.getBits()), pattern);
+            }
+        }
+
+        boolean dense = span <= DENSE_SPAN_BITS
+                || (span < Integer.SIZE - 1 && (1 << span) <= DENSE_FILL_RATIO * patterns.size());
+
+        int node = cells.size();
+        cells.add(dense ? "DENSE" : "SPARSE");
+        cells.add(Integer.toString(mask.getStart()));
+        cells.add(Integer.toString(maskLength));
+        cells.add(toHex(maskValue));
+
+        int targets;
+        int defaultCell = -1;
+        if (dense) {
+            cells.add(Integer.toString(shift));
+            targets = cells.size();
+            cells.addAll(Collections.nCopies(1 << span, "0"));
+        } else {
+            cells.add(Integer.toString(patterns.size()));
+            defaultCell = cells.size();
+            cells.add("0");
+            for (int key : patterns.keySet()) {
+                cells.add(toHex(key));
+            }
+            targets = cells.size();
+            cells.addAll(Collections.nCopies(patterns.size(), "0"));
+        }
+
+        int defaultNode = fallbackNode;
+        if (defaultPattern != null) {
+            defaultPattern.accept(this);
+            defaultNode = lastNode;
+        }
+
+        if (dense) {
+            for (int i = 0; i < 1 << span; i++) {
+                cells.set(targets + i, Integer.toString(defaultNode));
+            }
+        } else {
+            cells.set(defaultCell, Integer.toString(defaultNode));
+        }
+
+        int index = 0;
+        for (Map.Entry<Integer, Pattern> entry : patterns.entrySet()) {
+            entry.getValue().accept(this);
+
+            int cell = dense ? targets + (entry.getKey() >>> shift) : targets + index++;
+            cells.set(cell, Integer.toString(lastNode));
+        }
+
+        lastNode = node;
+    }
+
+    /**
+     * Writes the search node for a mask longer than <code>int</code>.
+     * @param mask the mask node
+     * @throws SemanticException if a nested mask is too long
+     */
+    private void visitWideMask(Mask mask) throws SemanticException {
+        Pattern defaultPattern = null;
+        SortedMap<Long, Pattern> patterns = new TreeMap<>();
+        for (TreeNode child : mask.getChildren()) {
+            Pattern pattern = (Pattern) child;
+            if (pattern.getBits().getLength() == 0) {
+                defaultPattern = pattern;
+            } else {
+                patterns.put(toLong(pattern.getBits()), pattern);
+            }
+        }
+
+        int node = cells.size();
+        cells.add("WIDE");
+        cells.add(Integer.toString(mask.getStart()));
+        cells.add(Integer.toString(mask.getBits().getLength()));
+        addLong(toLong(mask.getBits()));
+        cells.add(Integer.toString(patterns.size()));
+        int defaultCell = cells.size();
+        cells.add("0");
+        for (long key : patterns.keySet()) {
+            addLong(key);
+        }
+        int targets = cells.size();
+        cells.addAll(Collections.nCopies(patterns.size(), "0"));
+
+        int defaultNode = fallbackNode;
+        if (defaultPattern != null) {
+            defaultPattern.accept(this);
+            defaultNode = lastNode;
+        }
+        cells.set(defaultCell, Integer.toString(defaultNode));
+
+        int index = 0;
+        for (Pattern pattern : patterns.values()) {
+            pattern.accept(this);
+            cells.set(targets + index++, Integer.toString(lastNode));
+        }
+
+        lastNode = node;
+    }
+
+    /**
+     * Lowers the child node (a mask or a variant).
+     * @param pattern the pattern node
+     * @throws SemanticException if a mask is too long
+     */
+    @Override
+    public void visit(Pattern pattern) throws SemanticException {
+        pattern.acceptChildren(this);
+    }
+
+    /**
+     * Writes the node which stores the returned value and decodes subrules.
+     * @param variant the variant node
+     * @throws SemanticException if the returned subrule is too long
+     */
+    @Override
+    public void visit(Variant variant) throws SemanticException {
+        int node = cells.size();
+        String field;
+        if (variant.getOwner() != null) {
+            field = qualify(variant.getOwner().getFieldName());
+        } else {
+            field = currentRule.hasOnlyOneName()
+                    ? qualify(currentRule.getFieldName(currentRule.getNames().get(0)))
+                    : "0";
+        }
+
+        if (variant.getReturnString() != null) {
+            comments.put(node, '"' + variant.getReturnString() + '"');
+            cells.add("STRING");
+            cells.add(field);
+            cells.add(Integer.toString(strings.size()));
+            cells.add(qualify(variant.getFieldName()));
+            strings.add(variant.getReturnString());
+        } else if (variant.returns()) {
+            Subrule subrule = variant.getReturnSubrule();
+            if (subrule.getLength() > unitSize) {
+                throw new SemanticException(
+                        String.format(
+                                "Sub-rule %s length %d is over maximum %d bits",
+                                subrule.getName(), subrule.getLength(), unitSize),
+                        variant
+                );
+            }
+            cells.add(subrule.getLength() > Integer.SIZE ? "WIDE_BITS" : "BITS");
+            cells.add(field);
+            cells.add(Integer.toString(subrule.getStart()));
+            cells.add(Integer.toString(subrule.getLength()));
+        }
+
+        variant.acceptChildren(this);
+        cells.add("RETURN");
+        lastNode = node;
+    }
+
+    /**
+     * Writes the subrule invocation.
+     * @param subrule the subrule node
+     */
+    @Override
+    public void visit(Subrule subrule) {
+        cells.add("CALL");
+        addRuleReference(subrule.getRule());
+        cells.add(Integer.toString(subrule.getStart()));
+        cells.add(subrule.getRule().hasOnlyOneName() ? "0" : qualify(subrule.getFieldName()));
+    }
+
+    /**
+     * Adds a cell which will be later replaced by the entry node of the rule.
+     * @param rule the referenced rule
+     */
+    private void addRuleReference(Rule rule) {
+        ruleReferences.put(cells.size(), rule);
+        cells.add("0");
+    }
+
+    /**
+     * Returns the field passed to a root rule.
+     * @param rule the root rule
+     * @return the qualified field name, or "0" if the rule has only one name
+     */
+    private String getRootField(Rule rule) {
+        return rule.hasOnlyOneName() ? "0" : qualify(rule.getFieldName());
+    }
+
+    /**
+     * Qualifies the rule or variant constant with the decoder class name.
+     * <p>
+     * This avoids clashes with the members of the nested table class.
+     * @param field the field name
+     * @return the qualified field name
+     */
+    private String qualify(String field) {
+        return className + "." + field;
+    }
+
+    /**
+     * Writes the nested class containing the program, strings and node types.
+     */
+    private void writeTables() {
+        put("private static final class Table {");
+        put("static final int FAIL = 0;");
+        put("static final int DENSE = 1;");
+        put("static final int SPARSE = 2;");
+        put("static final int STRING = 3;");
+        put("static final int BITS = 4;");
+        put("static final int CALL = 5;");
+        put("static final int FALLBACK = 6;");
+        put("static final int RETURN = 7;");
+        put("static final int WIDE = 8;");
+        put("static final int WIDE_BITS = 9;");
+        put("");
+        put("static final String[] STRINGS = {");
+        for (Iterator<String> iterator = strings.iterator(); iterator.hasNext(); ) {
+            put('"' + iterator.next() + '"' + (iterator.hasNext() ? "," : ""));
+        }
+        put("};");
+        put("");
+        put("static final int[] PROGRAM = {");
+
+        List<Integer> nodes = new ArrayList<>(comments.keySet());
+        nodes.add(cells.size());
+        for (int i = 0; i < nodes.size() - 1; i++) {
+            int from = nodes.get(i);
+            int to = nodes.get(i + 1);
+
+            put("// " + from + ": " + comments.get(from));
+            for (int lineStart = from; lineStart < to; lineStart += VALUES_PER_LINE) {
+                int lineEnd = Math.min(to, lineStart + VALUES_PER_LINE);
+                String line = String.join(", ", cells.subList(lineStart, lineEnd));
+                put(line + (lineEnd < cells.size() ? "," : ""));
+            }
+        }
+        put("};");
+        put("}");
+        put("");
+    }
+
+    /**
+     * Writes the interpreter method walking the program.
+     */
+    private void writeInterpreter() {
+        put("/**");
+        put(" * Decodes a rule by walking the decoding program.");
+        put(" * @param node the index of the first program node");
+        put(" * @param start the number of bits from the start of the instruction to the rule start");
+        put(" * @param rule the rule name passed by the caller, or 0 if the rule has only one name");
+        put(" * @throws InvalidInstructionException when no pattern matches");
+        put(" */");
+        put("private void interpret(int node, int start, int rule) throws InvalidInstructionException {");
+        put("final int[] program = Table.PROGRAM;");
+        put("int unit;");
+        put("int low;");
+        put("int high;");
+        put("int count;");
+        put("int target;");
+        put("long wideUnit;");
+        put("");
+        put("while (true) {");
+        put("switch (program[node]) {");
+        put("case Table.DENSE:");
+        put("unit = readBits(start + program[node + 1], program[node + 2]) & program[node + 3];");
+        put("node = program[node + 5 + (unit >>> program[node + 4])];");
+        put("break;");
+        put("case Table.SPARSE:");
+        put("unit = readBits(start + program[node + 1], program[node + 2]) & program[node + 3];");
+        put("low = node + 6;");
+        put("high = low + program[node + 4] - 1;");
+        put("count = program[node + 4];");
+        put("node = program[node + 5];");
+        put("while (low <= high) {");
+        put("int index = (low + high) >>> 1;");
+        put("if (program[index] < unit) {");
+        put("low = index + 1;");
+        put("} else if (program[index] > unit) {");
+        put("high = index - 1;");
+        put("} else {");
+        put("node = program[index + count];");
+        put("break;");
+        put("}");
+        put("}");
+        put("break;");
+        put("case Table.WIDE:");
+        put("wideUnit = readLongBits(start + program[node + 1], program[node + 2]) "
+                + "& ((long) program[node + 3] << 32 | (program[node + 4] & 0xFFFFFFFFL));");
+        put("low = 0;");
+        put("high = program[node + 5] - 1;");
+        put("count = program[node + 5];");
+        put("node += 6;");
+        put("target = program[node];");
+        put("while (low <= high) {");
+        put("int index = (low + high) >>> 1;");
+        put("long key = (long) program[node + 1 + 2 * index] << 32 "
+                + "| (program[node + 2 + 2 * index] & 0xFFFFFFFFL);");
+        put("if (key < wideUnit) {");
+        put("low = index + 1;");
+        put("} else if (key > wideUnit) {");
+        put("high = index - 1;");
+        put("} else {");
+        put("target = program[node + 1 + 2 * count + index];");
+        put("break;");
+        put("}");
+        put("}");
+        put("node = target;");
+        put("break;");
+        put("case Table.STRING:");
+        put("putString(program[node + 1] == 0 ? rule : program[node + 1], "
+                + "Table.STRINGS[program[node + 2]], program[node + 3]);");
+        put("node += 4;");
+        put("break;");
+        put("case Table.BITS:");
+        put("putBits(program[node + 1] == 0 ? rule : program[node + 1], "
+                + "start + program[node + 2], program[node + 3]);");
+        put("node += 4;");
+        put("break;");
+        put("case Table.WIDE_BITS:");
+        put("putLongBits(program[node + 1] == 0 ? rule : program[node + 1], "
+                + "start + program[node + 2], program[node + 3]);");
+        put("node += 4;");
+        put("break;");
+        put("case Table.CALL:");
+        put("interpret(program[node + 1], start + program[node + 2], program[node + 3]);");
+        put("node += 4;");
+        put("break;");
+        put("case Table.FALLBACK:");
+        put("rule = program[node + 2];");
+        put("node = program[node + 1];");
+        put("start = 0;");
+        put("break;");
+        put("case Table.RETURN:");
+        put("return;");
+        put("default:");
+        put("throw new InvalidInstructionException();");
+        put("}");
+        put("}");
+        put("}");
+        put("");
+    }
+
+    private void put(String lineOfCode) {
+        printer.writeLine(lineOfCode);
+    }
+
+    private static int toInt(BitSequence bits) {
+        String hex = bits.toHexadecimal();
+        return hex.isEmpty() ? 0 : (int) Long.parseLong(hex, 16);
+    }
+
+    private static long toLong(BitSequence bits) {
+        String hex = bits.toHexadecimal();
+        return hex.isEmpty() ? 0 : Long.parseUnsignedLong(hex, 16);
+    }
+
+    /**
+     * Adds the high and low 32 bits of the value as two cells.
+     * @param value the value
+     */
+    private void addLong(long value) {
+        cells.add(toHex((int) (value >>> Integer.SIZE)));
+        cells.add(toHex((int) value));
+    }
+
+    private static String toHex(int value) {
+        return "0x" + Integer.toHexString(value);
+    }
+}
@@ -18,6 +18,7 @@
  */
 package net.emustudio.edigen.misc;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.regex.Pattern;
 
@@ -29,22 +30,28 @@ import java.util.regex.Pattern;
  * it can end with zeroes and the length is preserved. The sequence length can
  * be modified after creation. In addition, several conversion methods are
  * provided.
+ *
+ * The bits are stored in 64-bit words, the bit at index i being the bit
+ * (i % 64) of the word (i / 64). All bits after the end of the sequence are
+ * always zero, so the operations can process whole words.
  */
 public class BitSequence {
 
     private static final int NIBBLE_LENGTH = 4;
+    private static final int WORD_LENGTH = 64;
     private static final Pattern BIN_NUMBER = Pattern.compile("[01]+");
     private static final Pattern HEX_NUMBER = Pattern.compile("[0-9a-fA-F]+");
+    private static final int[] REVERSED_NIBBLES = {0, 8, 4, 12, 2, 10, 6, 14, 1, 9, 5, 13, 3, 11, 7, 15};
 
     private int length;
-    private final BitSet bitSet;
+    private long[] words;
 
     /**
      * Constructs a bit sequence with zero length.
      */
     public BitSequence() {
         length = 0;
-        bitSet = new BitSet();
+        words = new long[1];
     }
 
     /**
@@ -54,8 +61,11 @@ public class BitSequence {
      * @param length the initial sequence length, in bits
      */
     public BitSequence(int length) {
+        if (length < 0)
+            throw new NegativeArraySizeException("Negative sequence length: " + length);
+
         this.length = length;
-        bitSet = new BitSet(length);
+        words = new long[Math.max(1, wordCount(length))];
     }
 
     /**
@@ -66,7 +76,11 @@ public class BitSequence {
      */
     public BitSequence(int length, boolean value) {
         this(length);
-        bitSet.set(0, length, value);
+
+        if (value) {
+            Arrays.fill(words, 0, wordCount(length), -1L);
+            clearUnused();
+        }
     }
 
     /**
@@ -88,7 +102,7 @@ public class BitSequence {
 
         for (int i = 0; i < length; i++) {
             if (binaryString.charAt(i) == '1')
-                bits.set(i, true);
+                bits.words[i >>> 6] |= 1L << i;
         }
 
         return bits;
@@ -112,12 +126,9 @@ public class BitSequence {
         BitSequence bits = new BitSequence(digitCount * NIBBLE_LENGTH);
 
         for (int nibbleIndex = 0; nibbleIndex < digitCount; nibbleIndex++) {
-            int nibble = Integer.parseInt(hexString.substring(nibbleIndex, nibbleIndex + 1), 16);
-
-            for (int bitIndex = 0; bitIndex < NIBBLE_LENGTH; bitIndex++) {
-                boolean bit = ((nibble >>> (3 - bitIndex)) & 1) != 0;
-                bits.set(NIBBLE_LENGTH * nibbleIndex + bitIndex, bit);
-            }
+            int nibble = REVERSED_NIBBLES[Character.digit(hexString.charAt(nibbleIndex), 16)];
+            int position = nibbleIndex * NIBBLE_LENGTH;
+            bits.words[position >>> 6] |= (long) nibble << position;
         }
 
         return bits;
@@ -133,19 +144,28 @@ public class BitSequence {
         if (index < 0 || index >= length)
             throw new IndexOutOfBoundsException("Sequence index out of bounds");
 
-        return bitSet.get(index);
+        return (words[index >>> 6] & (1L << index)) != 0;
     }
 
     /**
      * Sets the bit at the given index to the specified value.
      * @param index the index to modify
      * @param value the boolean value
+     * @throws IndexOutOfBoundsException when index is negative
      */
     public void set(int index, boolean value) {
-        bitSet.set(index, value);
+        if (index < 0)
+            throw new IndexOutOfBoundsException("Sequence index out of bounds");
 
-        if (index >= length)
+        if (index >= length) {
+            ensureCapacity(index + 1);
             length = index + 1;
+        }
+
+        if (value)
+            words[index >>> 6] |= 1L << index;
+        else
+            words[index >>> 6] &= ~(1L << index);
     }
 
     /**
@@ -165,12 +185,16 @@ public class BitSequence {
      *         otherwise
      */
     public boolean containsOnly(boolean value) {
-        for (int i = 0; i < length; i++) {
-            if (get(i) != value)
+        int fullWords = length >>> 6;
+        long expected = value ? -1L : 0L;
+
+        for (int i = 0; i < fullWords; i++) {
+            if (words[i] != expected)
                 return false;
         }
 
-        return true;
+        int rest = length & (WORD_LENGTH - 1);
+        return rest == 0 || words[fullWords] == (expected & lowMask(rest));
     }
 
     /**
@@ -178,10 +202,25 @@ public class BitSequence {
      * @param bits the sequence to be appended
      */
     public void append(BitSequence bits) {
-        int appendedLength = bits.getLength();
+        int appendedLength = bits.length;
+        int appendedWords = wordCount(appendedLength);
+        long[] source = (bits == this) ? words.clone() : bits.words;
+        ensureCapacity(length + appendedLength);
 
-        for (int i = 0; i < appendedLength; i++)
-            bitSet.set(length + i, bits.get(i));
+        int target = length >>> 6;
+        int shift = length & (WORD_LENGTH - 1);
+
+        if (shift == 0) {
+            System.arraycopy(source, 0, words, target, appendedWords);
+        } else {
+            for (int i = 0; i < appendedWords; i++) {
+                long word = source[i];
+                words[target + i] |= word << shift;
+
+                if (target + i + 1 < words.length)
+                    words[target + i + 1] |= word >>> (WORD_LENGTH - shift);
+            }
+        }
 
         length += appendedLength;
     }
@@ -191,7 +230,7 @@ public class BitSequence {
      * @param bit the value to be appended
      */
     public void append(boolean bit) {
-        bitSet.set(length++, bit);
+        set(length, bit);
     }
 
     /**
@@ -214,12 +253,8 @@ public class BitSequence {
             BitSequence[] sequences = new BitSequence[count];
 
             for (int piece = 0; piece < count; piece++) {
-                sequences[piece] = new BitSequence();
                 int start = piece * bitsPerPiece;
-                int end = start + bitsPerPiece;
-
-                for (int bit = start; bit < end && bit < length; bit++)
-                    sequences[piece].append(get(bit));
+                sequences[piece] = subSequence(start, Math.min(bitsPerPiece, length - start));
             }
 
             return sequences;
@@ -239,10 +274,12 @@ public class BitSequence {
             throw new IndexOutOfBoundsException("Sequence index out of bounds");
 
         BitSequence sequence = new BitSequence(length);
+        int resultWords = wordCount(length);
 
-        for (int i = 0; i < length; i++)
-            sequence.set(i, get(start + i));
+        for (int i = 0; i < resultWords; i++)
+            sequence.words[i] = wordAt(start + i * WORD_LENGTH);
 
+        sequence.clearUnused();
         return sequence;
     }
 
@@ -254,12 +291,12 @@ public class BitSequence {
     public BitSequence and(BitSequence other) {
         int resultLength = Math.min(this.length, other.length);
         BitSequence result = new BitSequence(resultLength);
+        int resultWords = wordCount(resultLength);
 
-        for (int i = 0; i < resultLength; i++) {
-            if (this.get(i) && other.get(i))
-                result.set(i, true);
-        }
+        for (int i = 0; i < resultWords; i++)
+            result.words[i] = this.words[i] & other.words[i];
 
+        result.clearUnused();
         return result;
     }
 
@@ -276,23 +313,32 @@ public class BitSequence {
 
         BitSequence bits = (BitSequence) object;
 
-        return (bits.length == this.length) && bits.bitSet.equals(this.bitSet);
+        if (bits.length != this.length)
+            return false;
+
+        int usedWords = wordCount(length);
+
+        for (int i = 0; i < usedWords; i++) {
+            if (bits.words[i] != this.words[i])
+                return false;
+        }
+
+        return true;
     }
 
     /**
      * Returns the hash code of this sequence.
-     *
-     * The algorithm was automatically generated by NetBeans IDE.
      * @return the computed hash code
      */
     @Override
     public int hashCode() {
-        int hash = 3;
+        long hash = length;
+        int usedWords = wordCount(length);
 
-        hash = 29 * hash + this.length;
-        hash = 29 * hash + (this.bitSet != null ? this.bitSet.hashCode() : 0);
+        for (int i = 0; i < usedWords; i++)
+            hash = 31 * hash + words[i];
 
-        return hash;
+        return (int) (hash ^ (hash >>> 32));
     }
 
     /**
@@ -301,12 +347,12 @@ public class BitSequence {
      */
     @Override
     public String toString() {
-        StringBuilder result = new StringBuilder();
+        char[] result = new char[length];
 
         for (int i = 0; i < length; i++)
-            result.append(get(i) ? '1' : '0');
+            result[i] = ((words[i >>> 6] & (1L << i)) != 0) ? '1' : '0';
 
-        return result.toString();
+        return new String(result);
     }
 
     /**
@@ -317,7 +363,7 @@ public class BitSequence {
         boolean[] booleanArray = new boolean[length];
 
         for (int i = 0; i < length; i++)
-            booleanArray[i] = get(i);
+            booleanArray[i] = (words[i >>> 6] & (1L << i)) != 0;
 
         return booleanArray;
     }
@@ -330,34 +376,69 @@ public class BitSequence {
      * @return the hexadecimal string, in lowercase
      */
     public String toHexadecimal() {
-        if (length == 0)
-            return "";
+        int padBitCount = (NIBBLE_LENGTH - (length % NIBBLE_LENGTH)) % NIBBLE_LENGTH;
+        char[] result = new char[(length + padBitCount) / NIBBLE_LENGTH];
+
+        for (int digit = 0; digit < result.length; digit++) {
+            int position = digit * NIBBLE_LENGTH - padBitCount;
+            long nibble = (position < 0) ? words[0] << -position : wordAt(position);
 
-        int padBitCount = NIBBLE_LENGTH - (length % NIBBLE_LENGTH);
+            result[digit] = Character.forDigit(REVERSED_NIBBLES[(int) nibble & 0xF], 16);
+        }
 
-        if (padBitCount == NIBBLE_LENGTH)
-            padBitCount = 0;
+        return new String(result);
+    }
 
-        BitSequence padded = new BitSequence(padBitCount);
-        padded.append(this);
+    /**
+     * Returns 64 bits starting at the given index, the first bit being the
+     * lowest one; the bits after the end of the sequence are zero.
+     * @param start the index of the first bit
+     * @return the word
+     */
+    private long wordAt(int start) {
+        int index = start >>> 6;
+        int shift = start & (WORD_LENGTH - 1);
 
-        BitSequence[] nibbles = padded.split(NIBBLE_LENGTH);
-        StringBuilder result = new StringBuilder();
+        if (index >= words.length)
+            return 0;
 
-        for (BitSequence nibble : nibbles) {
-            int digit = 0;
-            int factor = 8;
+        long word = words[index] >>> shift;
 
-            for (int i = 0; i < NIBBLE_LENGTH; i++) {
-                if (nibble.get(i))
-                    digit += factor;
+        if (shift != 0 && index + 1 < words.length)
+            word |= words[index + 1] << (WORD_LENGTH - shift);
 
-                factor /= 2;
-            }
+        return word;
+    }
 
-            result.append(Integer.toHexString(digit));
-        }
+    /**
+     * Makes room for the given number of bits, keeping the content.
+     * @param bitCount the required capacity, in bits
+     */
+    private void ensureCapacity(int bitCount) {
+        int required = wordCount(bitCount);
+
+        if (required > words.length)
+            words = Arrays.copyOf(words, Math.max(required, 2 * words.length));
+    }
+
+    /**
+     * Sets all bits after the end of the sequence to zero.
+     */
+    private void clearUnused() {
+        int usedWords = wordCount(length);
+        int rest = length & (WORD_LENGTH - 1);
+
+        if (rest != 0)
+            words[usedWords - 1] &= lowMask(rest);
+
+        Arrays.fill(words, usedWords, words.length, 0L);
+    }
+
+    private static int wordCount(int bitCount) {
+        return (bitCount + WORD_LENGTH - 1) >>> 6;
+    }
 
-        return result.toString();
+    private static long lowMask(int bitCount) {
+        return -1L >>> (WORD_LENGTH - bitCount);
     }
 }
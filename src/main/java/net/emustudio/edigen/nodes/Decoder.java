@@ -28,12 +28,18 @@ import java.util.*;
  */
 public class Decoder extends TreeNode {
     /**
-     * Size (in bits) of one unit which decoder can read at once
+     * Default size (in bits) of one unit which decoder can read at once
      */
     public static final int UNIT_SIZE_BITS = 32;
 
+    /**
+     * Maximal configurable unit size (in bits)
+     */
+    public static final int MAX_UNIT_SIZE_BITS = 64;
+
     private final Set<String> declaredRootRuleNames = new LinkedHashSet<>();
     private final Set<Rule> rootRules = new LinkedHashSet<>();
+    private int unitSize = UNIT_SIZE_BITS;
 
     /**
      * Creates new decoder.
@@ -111,6 +117,27 @@ public class Decoder extends TreeNode {
         this.rootRules.addAll(rootRules);
     }
 
+    /**
+     * Returns the size of one unit which the decoder can read at once.
+     * @return the unit size in bits
+     */
+    public int getUnitSize() {
+        return unitSize;
+    }
+
+    /**
+     * Sets the size of one unit which the decoder can read at once.
+     * <p>
+     * Masks longer than the unit size are split into multiple masks.
+     * @param unitSize the unit size in bits, from 1 to {@link #MAX_UNIT_SIZE_BITS}
+     */
+    public void setUnitSize(int unitSize) {
+        if (unitSize < 1 || unitSize > MAX_UNIT_SIZE_BITS) {
+            throw new IllegalArgumentException("Unit size must be between 1 and " + MAX_UNIT_SIZE_BITS);
+        }
+        this.unitSize = unitSize;
+    }
+
     /**
      * Accepts the visitor.
      * @param visitor the visitor object
@@ -134,6 +161,7 @@ public class Decoder extends TreeNode {
     public TreeNode shallowCopy() {
         Decoder cp = new Decoder(declaredRootRuleNames);
         cp.setRootRules(rootRules);
+        cp.setUnitSize(unitSize);
         return cp;
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.nodes;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The control flow declared for a variant, e.g. <code>[branch relative imm8]</code>.
+ * <p>
+ * It describes where the execution can continue after an instruction matching
+ * the variant. An instruction without a declared flow continues at the next
+ * instruction.
+ */
+public class Flow {
+
+    /**
+     * The kind of the control flow.
+     */
+    public enum Kind {
+        /**
+         * The execution continues at the target or at the next instruction.
+         */
+        BRANCH,
+        /**
+         * The execution continues at the target only.
+         */
+        JUMP,
+        /**
+         * The execution does not continue at any known address.
+         */
+        STOP
+    }
+
+    private final Kind kind;
+    private Subrule target;
+    private final boolean relative;
+    private List<String> strategies = Collections.emptyList();
+
+    /**
+     * Constructs the control flow.
+     * @param kind the kind of the flow
+     * @param target the subrule containing the target address, or null for
+     *        {@link Kind#STOP}
+     * @param relative true if the target is a signed displacement from the
+     *        next instruction, false if it is an absolute address
+     */
+    public Flow(Kind kind, Subrule target, boolean relative) {
+        this.kind = kind;
+        this.target = target;
+        this.relative = relative;
+    }
+
+    /**
+     * Returns the kind of the flow.
+     * @return the kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the subrule containing the target address.
+     * @return the subrule, or null if the flow has no target
+     */
+    public Subrule getTarget() {
+        return target;
+    }
+
+    /**
+     * Sets the subrule containing the target address.
+     * @param target the subrule, must be contained in the variant
+     */
+    public void setTarget(Subrule target) {
+        this.target = target;
+    }
+
+    /**
+     * Returns true if the target is relative to the next instruction.
+     * @return true if relative, false if absolute
+     */
+    public boolean isRelative() {
+        return relative;
+    }
+
+    /**
+     * Returns the constant decoding strategies of the target.
+     * @return list of strategy names - e.g., "reverse_bytes"
+     */
+    public List<String> getStrategies() {
+        return strategies;
+    }
+
+    /**
+     * Sets the constant decoding strategies of the target.
+     * @param strategies the strategy names, in the order of application
+     */
+    public void setStrategies(List<String> strategies) {
+        this.strategies = strategies;
+    }
+
+    /**
+     * Returns the flow as it is written in the specification.
+     * @return the string
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[").append(kind.name().toLowerCase());
+        if (target != null) {
+            result.append(relative ? " relative " : " ").append(target.getName());
+            if (!strategies.isEmpty()) {
+                result.append('(').append(String.join(", ", strategies)).append(')');
+            }
+        }
+        return result.append(']').toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Flow flow = (Flow) o;
+
+        if (kind != flow.kind) return false;
+        if (relative != flow.relative) return false;
+        if (!Objects.equals(getTargetName(), flow.getTargetName())) return false;
+        return Objects.equals(strategies, flow.strategies);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, relative, getTargetName(), strategies);
+    }
+
+    private String getTargetName() {
+        return (target == null) ? null : target.getName();
+    }
+}
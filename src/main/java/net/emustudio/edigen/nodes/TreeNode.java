@@ -31,17 +31,24 @@ import java.util.*;
  *
  * <p>One node can have an unlimited number of children. Insertion order is
  * preserved.</p>
+ *
+ * <p>The children are kept in an array and compared by identity, since
+ * almost all nodes override equals(). The array is shared with the lists
+ * returned by {@link #getChildren()} and with running iterations; it is
+ * copied only when a child is removed while it is shared, so iterating
+ * does not allocate and children can still be removed or added during
+ * the iteration.</p>
  */
 public abstract class TreeNode {
 
+    private static final TreeNode[] NO_CHILDREN = new TreeNode[0];
+
     private TreeNode parent;
-    // NOTE: Since almost all TreeNodes implement equals(), calling e.g. children.remove(this) can fail. Therefore we
-    //       need a key which does not override equals() - so the comparison is the same as using `==`
-    private final Map<String, TreeNode> children = new LinkedHashMap<>();
+    private TreeNode[] children = NO_CHILDREN;
+    private int childCount;
+    private boolean childrenShared;
     private Integer line;
 
-    private final String ID = UUID.randomUUID().toString();
-
     /**
      * Returns the parent of this node.
      *
@@ -53,29 +60,27 @@ public abstract class TreeNode {
 
     /**
      * Returns the child at given index.
-     *
-     * <em>Note:</em> The average time complexity of this method is O(n).
      * @param index the index, starting at 0
      * @return the child node
+     * @throws IndexOutOfBoundsException if the index is not in [0; childCount())
      */
     public TreeNode getChild(int index) {
-        Iterator<TreeNode> iterator = children.values().iterator();
+        if (index < 0 || index >= childCount)
+            throw new IndexOutOfBoundsException("Child index out of bounds: " + index);
 
-        for (int i = 0; i < index; i++)
-            iterator.next();
-
-        return iterator.next();
+        return children[index];
     }
 
     /**
      * Returns all children of this node.
      *
-     * A copy of the collection is returned to allow children removal and
-     * insertion during the iteration.
+     * The returned list is an unmodifiable snapshot, which is not affected by
+     * children removal and insertion during the iteration.
      * @return the iterable collection of all children
      */
     public List<TreeNode> getChildren() {
-        return new ArrayList<>(children.values());
+        childrenShared = true;
+        return new Children(children, childCount);
     }
 
     /**
@@ -83,17 +88,27 @@ public abstract class TreeNode {
      * @return the child count
      */
     public int childCount() {
-        return children.size();
+        return childCount;
     }
 
     /**
      * Adds a child to this node, placing it on the end.
+     *
+     * If the node is already a child of this node, its position is kept.
      * @param child the child node
      * @return this
      */
     public TreeNode addChild(TreeNode child) {
+        if (child.parent == this && indexOf(child) != -1)
+            return this;
+
         child.parent = this;
-        children.put(child.ID, child);
+
+        if (childCount == children.length)
+            children = Arrays.copyOf(children, Math.max(4, 2 * childCount));
+
+        // the shared snapshots end before childCount, so the array can be extended in place
+        children[childCount++] = child;
         return this;
     }
 
@@ -120,8 +135,8 @@ public abstract class TreeNode {
 
     public TreeNode copy() {
         TreeNode cp = shallowCopy();
-        for (TreeNode child : children.values()) {
-            cp.addChild(child.copy());
+        for (int i = 0; i < childCount; i++) {
+            cp.addChild(children[i].copy());
         }
         return cp;
     }
@@ -134,7 +149,7 @@ public abstract class TreeNode {
      * node and the parent one is removed bilaterally.
      */
     public void remove() {
-        parent.children.remove(ID);
+        parent.removeChild(this);
         this.parent = null;
     }
 
@@ -156,8 +171,12 @@ public abstract class TreeNode {
      * @throws SemanticException depends on situation
      */
     public void acceptChildren(Visitor visitor) throws SemanticException {
-        for (TreeNode child : getChildren())
-            child.accept(visitor);
+        TreeNode[] snapshot = children;
+        int count = childCount;
+        childrenShared = true;
+
+        for (int i = 0; i < count; i++)
+            snapshot[i].accept(visitor);
     }
 
     /**
@@ -206,6 +225,62 @@ public abstract class TreeNode {
 
     @Override
     public int hashCode() {
-        return ID.hashCode();
+        return System.identityHashCode(this);
+    }
+
+    /**
+     * Removes the child from the list of children, if present.
+     * @param child the child node, compared by identity
+     */
+    private void removeChild(TreeNode child) {
+        int index = indexOf(child);
+        if (index == -1)
+            return;
+
+        if (childrenShared) {
+            TreeNode[] copy = new TreeNode[children.length];
+            System.arraycopy(children, 0, copy, 0, index);
+            System.arraycopy(children, index + 1, copy, index, childCount - index - 1);
+            children = copy;
+            childrenShared = false;
+        } else {
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            children[childCount - 1] = null;
+        }
+        childCount--;
+    }
+
+    private int indexOf(TreeNode child) {
+        for (int i = childCount - 1; i >= 0; i--) {
+            if (children[i] == child)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * An unmodifiable view of the first children of a shared children array.
+     */
+    private static class Children extends AbstractList<TreeNode> implements RandomAccess {
+        private final TreeNode[] children;
+        private final int size;
+
+        Children(TreeNode[] children, int size) {
+            this.children = children;
+            this.size = size;
+        }
+
+        @Override
+        public TreeNode get(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("Child index out of bounds: " + index);
+
+            return children[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
 }
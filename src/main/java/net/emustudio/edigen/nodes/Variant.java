@@ -44,6 +44,8 @@ public class Variant extends TreeNode {
     private ReturnType returnType = ReturnType.NOTHING;
     private String returnString;
     private Subrule returnSubrule;
+    private Flow flow;
+    private Rule owner;
 
     /**
      * Returns the string which this variant returns.
@@ -98,6 +100,44 @@ public class Variant extends TreeNode {
         return returnType != ReturnType.NOTHING;
     }
 
+    /**
+     * Returns the control flow declared for this variant.
+     *
+     * @return the flow, or null if the execution continues at the next
+     *         instruction
+     */
+    public Flow getFlow() {
+        return flow;
+    }
+
+    /**
+     * Declares the control flow of instructions matching this variant.
+     *
+     * @param flow the flow
+     */
+    public void setFlow(Flow flow) {
+        this.flow = flow;
+    }
+
+    /**
+     * Returns the root rule which this variant was copied from, when the
+     * variant was merged into the decision tree of another root rule.
+     *
+     * @return the original root rule, or null if the variant was not merged
+     */
+    public Rule getOwner() {
+        return owner;
+    }
+
+    /**
+     * Sets the root rule which this variant was copied from.
+     *
+     * @param owner the original root rule
+     */
+    public void setOwner(Rule owner) {
+        this.owner = owner;
+    }
+
     /**
      * Returns the generated field name if the variant returns a string.
      *
@@ -135,6 +175,9 @@ public class Variant extends TreeNode {
         else if (returnType == ReturnType.SUBRULE)
             result.append(": return ").append(returnSubrule);
 
+        if (flow != null)
+            result.append(' ').append(flow);
+
         return result.toString();
     }
 
@@ -165,6 +208,8 @@ public class Variant extends TreeNode {
         if (returnType != variant.returnType) return false;
         if (!Objects.equals(returnString, variant.returnString))
             return false;
+        if (!Objects.equals(flow, variant.flow))
+            return false;
         return Objects.equals(returnSubrule, variant.returnSubrule);
     }
 
@@ -174,6 +219,8 @@ public class Variant extends TreeNode {
         cp.returnType = returnType;
         cp.returnString = returnString;
         cp.returnSubrule = returnSubrule;
+        cp.flow = flow;
+        cp.owner = owner;
         return cp;
     }
 }
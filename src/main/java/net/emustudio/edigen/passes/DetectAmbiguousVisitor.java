@@ -27,7 +27,9 @@ import net.emustudio.edigen.nodes.Rule;
 import net.emustudio.edigen.nodes.TreeNode;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
@@ -122,9 +124,12 @@ public class DetectAmbiguousVisitor extends Visitor {
     /**
      * Detects the path ambiguity under the node specified.
      * <p>
-     * All combinations without repetition of the child masks are tried. For all
-     * of these, all pattern pairs made of the first mask's children and the
-     * second mask's children are checked.
+     * All combinations without repetition of the child masks are tried. For
+     * each of these, the second mask's patterns are partitioned by their bits
+     * under the common mask, and the first mask's patterns are looked up in
+     * the partitions. So a pair of patterns is found ambiguous in a single
+     * lookup, and it is the first one in the order of the first and the second
+     * mask's children.
      *
      * @param node the node object
      * @throws SemanticException when the path ambiguity is detected
@@ -135,18 +140,24 @@ public class DetectAmbiguousVisitor extends Visitor {
 
         int maskCount = masks.size();
         int firstMaskIndex = 0;
+        Map<BitSequence, TreeNode> partitions = new HashMap<>();
 
         for (Mask mask1 : masks) {
             for (Mask mask2 : masks.subList(++firstMaskIndex, maskCount)) {
-                Mask commonMask = mask1.and(mask2);
+                BitSequence commonBits = mask1.getBits().and(mask2.getBits());
+
+                partitions.clear();
+                for (TreeNode pattern2 : mask2.getChildren()) {
+                    partitions.putIfAbsent(project((Pattern) pattern2, commonBits), pattern2);
+                }
 
                 for (TreeNode pattern1 : mask1.getChildren()) {
-                    for (TreeNode pattern2 : mask2.getChildren()) {
-                        if (isAmbiguous((Pattern) pattern1, (Pattern) pattern2, commonMask)) {
-                            String message = String.format(MESSAGE, currentRule.getLabel())
-                                    + ": " + pattern1 + ", " + pattern2 + " (" + commonMask + ")";
-                            throw new SemanticException(message, currentRule);
-                        }
+                    TreeNode pattern2 = partitions.get(project((Pattern) pattern1, commonBits));
+
+                    if (pattern2 != null) {
+                        String message = String.format(MESSAGE, currentRule.getLabel())
+                                + ": " + pattern1 + ", " + pattern2 + " (" + new Mask(commonBits) + ")";
+                        throw new SemanticException(message, currentRule);
                     }
                 }
             }
@@ -154,18 +165,16 @@ public class DetectAmbiguousVisitor extends Visitor {
     }
 
     /**
-     * Returns true if two patterns are ambiguous.
+     * Returns the bits of the pattern under the common mask.
+     * <p>
+     * Two patterns are ambiguous if their projections are equal.
      *
-     * @param pattern1   the first pattern
-     * @param pattern2   the second pattern
-     * @param commonMask the first mask ANDed with the second mask
-     * @return true if the patterns are ambiguous, false otherwise
+     * @param pattern    the pattern
+     * @param commonBits the bits of the first mask ANDed with the second mask
+     * @return the pattern bits ANDed with the common mask
      */
-    private boolean isAmbiguous(Pattern pattern1, Pattern pattern2, Mask commonMask) {
-        BitSequence commonPattern1 = pattern1.and(commonMask).getBits();
-        BitSequence commonPattern2 = pattern2.and(commonMask).getBits();
-
-        return (commonPattern1.equals(commonPattern2));
+    private BitSequence project(Pattern pattern, BitSequence commonBits) {
+        return pattern.getBits().and(commonBits);
     }
 
     /**
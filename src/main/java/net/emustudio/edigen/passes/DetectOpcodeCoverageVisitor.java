@@ -0,0 +1,327 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.passes;
+
+import net.emustudio.edigen.SemanticException;
+import net.emustudio.edigen.Visitor;
+import net.emustudio.edigen.misc.BitSequence;
+import net.emustudio.edigen.nodes.*;
+
+import java.util.*;
+
+/**
+ * Computes which values of the first instruction bits can start a valid
+ * instruction.
+ * <p>
+ * The first <code>min(unit size, 16)</code> bits are covered. For each root
+ * rule, the visitor computes a bit map with one bit per possible value of
+ * these bits, set if the value is assigned to some instruction. The map of the
+ * whole decoder is the union of the root rule maps.
+ * <p>
+ * The masks of the final tree are evaluated as the generated decoder would:
+ * the children of a rule, pattern or variant must all succeed, a mask selects
+ * the matching pattern, or the default pattern if no pattern matches. Bits
+ * behind the covered ones are considered independent for each mask, so the map
+ * may contain encodings which are rejected later, but never misses an assigned
+ * encoding.
+ */
+public class DetectOpcodeCoverageVisitor extends Visitor {
+    /**
+     * The maximum number of covered bits (a map of 8 KiB).
+     */
+    public static final int MAX_COVERAGE_BITS = 16;
+
+    private final Map<Rule, long[]> rootCoverage = new LinkedHashMap<>();
+    private final Map<Rule, Map<Integer, long[]>> ruleCoverage = new IdentityHashMap<>();
+    private int coverageBits;
+    private int wordCount;
+    private int offset;
+    private long[] result;
+
+    /**
+     * Returns the number of the covered instruction bits.
+     * @return the number of bits, at least 1
+     */
+    public int getCoverageBits() {
+        return coverageBits;
+    }
+
+    /**
+     * Returns the map of assigned encodings of the whole decoder.
+     * <p>
+     * The bit <code>i % 64</code> of the word <code>i / 64</code> is set if
+     * an instruction can start with the bits <code>i</code> (in big endian).
+     * @return the bit map
+     */
+    public long[] getAssigned() {
+        long[] assigned = new long[wordCount];
+        for (long[] coverage : rootCoverage.values()) {
+            or(assigned, coverage);
+        }
+        return assigned;
+    }
+
+    /**
+     * Returns the map of encodings assigned by one root rule.
+     * @param rule the root rule
+     * @return the bit map, or null if the rule is not a root rule
+     */
+    public long[] getAssigned(Rule rule) {
+        long[] coverage = rootCoverage.get(rule);
+        return (coverage == null) ? null : coverage.clone();
+    }
+
+    /**
+     * Returns a human-readable report of assigned encodings, with the unassigned
+     * ranges listed for each root rule.
+     * @return the report
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("Opcode coverage of the first ").append(coverageBits).append(" bits:\n");
+        for (Map.Entry<Rule, long[]> entry : rootCoverage.entrySet()) {
+            appendCoverage(report, entry.getKey().getLabel(), entry.getValue());
+        }
+        if (rootCoverage.size() > 1) {
+            appendCoverage(report, "total", getAssigned());
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void visit(Decoder decoder) throws SemanticException {
+        coverageBits = Math.min(decoder.getUnitSize(), MAX_COVERAGE_BITS);
+        wordCount = Math.max(1, (1 << coverageBits) >>> 6);
+
+        for (Rule rule : decoder.getRootRules()) {
+            offset = 0;
+            rule.accept(this);
+            rootCoverage.put(rule, result);
+        }
+    }
+
+    /**
+     * Computes the encodings accepted by the rule at the current offset. The
+     * result is memoized for each offset within the covered bits; a rule
+     * starting behind them accepts everything.
+     * @param rule the rule node
+     * @throws SemanticException never
+     */
+    @Override
+    public void visit(Rule rule) throws SemanticException {
+        if (offset >= coverageBits) {
+            result = full();
+            return;
+        }
+
+        Map<Integer, long[]> byOffset = ruleCoverage.computeIfAbsent(rule, r -> new HashMap<>());
+        long[] coverage = byOffset.get(offset);
+        if (coverage == null) {
+            coverage = allChildren(rule);
+            byOffset.put(offset, coverage);
+        }
+        result = coverage;
+    }
+
+    /**
+     * Computes the encodings for which some pattern of the mask (or the default
+     * pattern) matches and its children succeed. The children of a zero-only
+     * mask are not matched, but executed one after another.
+     * @param mask the mask node
+     * @throws SemanticException never
+     */
+    @Override
+    public void visit(Mask mask) throws SemanticException {
+        BitSequence maskBits = mask.getBits();
+        if (maskBits.containsOnly(false)) {
+            result = allChildren(mask);
+            return;
+        }
+        int start = offset + mask.getStart();
+
+        int prefixMask = 0;
+        int hiddenBits = 0;
+        for (int i = 0; i < maskBits.getLength(); i++) {
+            if (maskBits.get(i)) {
+                if (start + i < coverageBits) {
+                    prefixMask |= 1 << (coverageBits - 1 - start - i);
+                } else {
+                    hiddenBits++;
+                }
+            }
+        }
+
+        long[] assigned = new long[wordCount];
+        Map<Integer, Set<Long>> hiddenValues = new HashMap<>();
+        Pattern defaultPattern = null;
+
+        for (TreeNode child : mask.getChildren()) {
+            Pattern pattern = (Pattern) child;
+            BitSequence patternBits = pattern.getBits();
+            if (patternBits.getLength() == 0) {
+                defaultPattern = pattern;
+                continue;
+            }
+
+            int prefix = 0;
+            long hidden = 0;
+            for (int i = 0; i < maskBits.getLength(); i++) {
+                if (maskBits.get(i)) {
+                    boolean bit = i < patternBits.getLength() && patternBits.get(i);
+                    if (start + i < coverageBits) {
+                        prefix |= (bit ? 1 : 0) << (coverageBits - 1 - start - i);
+                    } else {
+                        hidden = hidden << 1 | (bit ? 1 : 0);
+                    }
+                }
+            }
+            hiddenValues.computeIfAbsent(prefix, p -> new HashSet<>()).add(hidden);
+
+            long[] accepted = allChildren(pattern);
+            forEachMatchingWord(prefixMask, prefix, (word, lanes) -> assigned[word] |= accepted[word] & lanes);
+        }
+
+        if (defaultPattern != null) {
+            // the default pattern is unreachable where the patterns cover all hidden values
+            long[] reachesDefault = full();
+            for (Map.Entry<Integer, Set<Long>> entry : hiddenValues.entrySet()) {
+                if (hiddenBits < Long.SIZE - 1 && entry.getValue().size() == 1L << hiddenBits) {
+                    forEachMatchingWord(prefixMask, entry.getKey(), (word, lanes) -> reachesDefault[word] &= ~lanes);
+                }
+            }
+
+            long[] accepted = allChildren(defaultPattern);
+            for (int word = 0; word < wordCount; word++) {
+                assigned[word] |= accepted[word] & reachesDefault[word];
+            }
+        }
+
+        result = assigned;
+    }
+
+    @Override
+    public void visit(Pattern pattern) throws SemanticException {
+        result = allChildren(pattern);
+    }
+
+    @Override
+    public void visit(Variant variant) throws SemanticException {
+        result = allChildren(variant);
+    }
+
+    @Override
+    public void visit(Subrule subrule) throws SemanticException {
+        if (subrule.getRule() == null) {
+            result = full();
+            return;
+        }
+
+        int savedOffset = offset;
+        offset += subrule.getStart();
+        subrule.getRule().accept(this);
+        offset = savedOffset;
+    }
+
+    /**
+     * Computes the encodings for which all children of the node succeed, since
+     * the decoder executes them one after another.
+     * @param node the node
+     * @return a new bit map
+     * @throws SemanticException never
+     */
+    private long[] allChildren(TreeNode node) throws SemanticException {
+        long[] accepted = full();
+        for (TreeNode child : node.getChildren()) {
+            child.accept(this);
+            for (int word = 0; word < wordCount; word++) {
+                accepted[word] &= result[word];
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Calls the action for each word of the map containing encodings <code>x</code>
+     * such that <code>(x &amp; prefixMask) == prefix</code>, passing the bits
+     * of these encodings within the word.
+     * @param prefixMask the covered bits of the mask
+     * @param prefix the covered bits of the pattern
+     * @param action the action
+     */
+    private void forEachMatchingWord(int prefixMask, int prefix, WordAction action) {
+        long lanes = 0;
+        int laneCount = Math.min(Long.SIZE, 1 << coverageBits);
+        for (int lane = 0; lane < laneCount; lane++) {
+            if ((lane & prefixMask & 0x3F) == (prefix & 0x3F)) {
+                lanes |= 1L << lane;
+            }
+        }
+
+        int wordMask = prefixMask >>> 6;
+        int wordPrefix = prefix >>> 6;
+        int free = ~wordMask & (wordCount - 1);
+        int subset = 0;
+        do {
+            action.apply(wordPrefix | subset, lanes);
+            subset = (subset - free) & free;
+        } while (subset != 0);
+    }
+
+    private long[] full() {
+        long[] bits = new long[wordCount];
+        Arrays.fill(bits, (coverageBits >= 6) ? -1L : (1L << (1 << coverageBits)) - 1);
+        return bits;
+    }
+
+    private static void or(long[] target, long[] source) {
+        for (int word = 0; word < target.length; word++) {
+            target[word] |= source[word];
+        }
+    }
+
+    private void appendCoverage(StringBuilder report, String label, long[] coverage) {
+        int total = 1 << coverageBits;
+        int count = 0;
+        for (long word : coverage) {
+            count += Long.bitCount(word);
+        }
+        report.append(String.format("  %s: %d of %d encodings assigned\n", label, count, total));
+
+        List<String> ranges = new ArrayList<>();
+        int digits = (coverageBits + 3) / 4;
+        int from = -1;
+        for (int value = 0; value <= total; value++) {
+            boolean unassigned = value < total && (coverage[value >>> 6] & (1L << value)) == 0;
+            if (unassigned && from < 0) {
+                from = value;
+            } else if (!unassigned && from >= 0) {
+                String first = String.format("0x%0" + digits + "X", from);
+                ranges.add(from == value - 1 ? first : first + String.format("-0x%0" + digits + "X", value - 1));
+                from = -1;
+            }
+        }
+        if (!ranges.isEmpty()) {
+            report.append("    unassigned: ").append(String.join(", ", ranges)).append('\n');
+        }
+    }
+
+    private interface WordAction {
+        void apply(int word, long lanes);
+    }
+}
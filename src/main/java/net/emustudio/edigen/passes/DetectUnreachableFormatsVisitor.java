@@ -43,37 +43,38 @@ import java.util.*;
  * %%
  * <p>
  * "%s" = instruction arg;    // unreachable
+ * <p>
+ * A reachable format is a set of names which a decoded instruction can
+ * contain. For each rule, the sets are computed once and memoized: a variant
+ * contributes the union of one set of each of its subrules (their product),
+ * plus the name of the rule or subrule if it returns a value. The names are
+ * represented as bits, so equal sets are merged as soon as they are created.
  */
 public class DetectUnreachableFormatsVisitor extends Visitor {
     private final Set<Set<String>> reachable = new HashSet<>();
     private final Set<Set<String>> formats = new HashSet<>();
     private Set<String> currentFormat;
 
+    private final Map<Rule, RulePaths> rulePaths = new IdentityHashMap<>();
+    private final Map<String, Integer> nameBits = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
     public Set<Set<String>> getReachable() {
         return new HashSet<>(reachable);
     }
 
     @Override
     public void visit(Decoder decoder) throws SemanticException {
-        BuildSlimTreeVisitor slimTreeVisitor = new BuildSlimTreeVisitor();
         for (Rule rule : decoder.getRootRules()) {
-            rule.accept(slimTreeVisitor);
-        }
-
-        List<Rule> slimTree = slimTreeVisitor.slimTree;
-        List<Visitor> additionalVisitors = List.of(
-                new RemoveOrphanSubrulesVisitor(),
-                new UniqueSubrulePathsVisitor(),
-                new EliminateVariantsVisitor()
-        );
-
-        for (Rule rule : slimTree) {
-            for (Visitor visitor : additionalVisitors) {
-                rule.accept(visitor);
+            Set<BitSet> paths = paths(rule, rule.getNames().get(0));
+            if (paths == null) {
+                continue;
+            }
+            for (BitSet path : paths) {
+                if (!path.isEmpty()) {
+                    reachable.add(toNames(path));
+                }
             }
-            CollectPathsVisitor collectVisitor = new CollectPathsVisitor();
-            rule.accept(collectVisitor);
-            reachable.addAll(collectVisitor.allPaths);
         }
     }
 
@@ -109,238 +110,128 @@ public class DetectUnreachableFormatsVisitor extends Visitor {
     }
 
     /**
-     * Creates a copy of current tree:
-     * - preserves just root rules, variants and subrules.
-     * - expands subrules - adds subule rule "pointers" as children.
-     * - ignores masks and patterns.
+     * Returns the sets of names which can be decoded by the rule.
+     *
+     * @param rule the rule
+     * @param name the name under which the rule returns its value
+     * @return the sets of names, or null if the rule has no variants
+     * @throws SemanticException never
      */
-    private static class BuildSlimTreeVisitor extends Visitor {
-        final List<Rule> slimTree = new ArrayList<>();
-        private TreeNode current;
-
-        @Override
-        public void visit(Rule rule) throws SemanticException {
-            Rule newCurrent = new Rule(rule.getNames());
-            if (rule.getRootRuleName() != null) {
-                newCurrent.setRoot(rule.isRoot(), rule.getRootRuleName());
-            }
-            if (rule.isRoot()) {
-                slimTree.add(newCurrent);
-            }
-            current = newCurrent;
-            rule.acceptChildren(this);
-            current = newCurrent;
+    private Set<BitSet> paths(Rule rule, String name) throws SemanticException {
+        RulePaths paths = rulePaths.get(rule);
+        if (paths == null) {
+            paths = computePaths(rule);
+            rulePaths.put(rule, paths);
         }
-
-        @Override
-        public void visit(Variant variant) throws SemanticException {
-            TreeNode old = current;
-
-            Variant newCurrent = new Variant();
-            if (variant.getReturnString() != null) {
-                newCurrent.setReturnString(variant.getReturnString());
-            } else if (variant.getReturnSubrule() != null) {
-                Subrule newSubrule = new Subrule(variant.getReturnSubrule().getName());
-                if (variant.getReturnSubrule().getRule() != null) {
-                    variant.getReturnSubrule().getRule().accept(this);
-                    newSubrule.setRule((Rule) current);
-                    current = old;
-                }
-                newCurrent.setReturnSubrule(newSubrule);
-            }
-            current.addChild(newCurrent);
-            current = newCurrent;
-
-            variant.acceptChildren(this);
-            current = old;
+        if (paths.isEmpty()) {
+            return null;
         }
 
-        @Override
-        public void visit(Subrule subrule) throws SemanticException {
-            TreeNode old = current;
-
-            // subrule has no children, except rule
-            Subrule newCurrent = new Subrule(subrule.getName());
-            current.addChild(newCurrent);
-            if (subrule.getRule() != null) {
-                current = newCurrent;
-                subrule.getRule().acceptChildren(this);
-                current = old;
-            }
+        Set<BitSet> result = new HashSet<>(paths.silent);
+        int bit = bitOf(name);
+        for (BitSet path : paths.returning) {
+            BitSet named = (BitSet) path.clone();
+            named.set(bit);
+            result.add(named);
         }
+        return result;
     }
 
     /**
-     * Preserves only subrules used as the format key; removes empty "pointers" to itself.
-     * Subrules with no children do not add the format key (variants do).
+     * Computes the sets of names decoded by the variants of the rule,
+     * without the name of the rule itself.
+     *
+     * @param rule the rule
+     * @return the sets of names of the returning and non-returning variants
+     * @throws SemanticException never
      */
-    private static class RemoveOrphanSubrulesVisitor extends Visitor {
-
-        @Override
-        public void visit(Subrule subrule) throws SemanticException {
-            if (subrule.childCount() == 0) {
-                subrule.remove();
-            } else {
-                subrule.acceptChildren(this);
+    private RulePaths computePaths(Rule rule) throws SemanticException {
+        CollectVisitor variants = new CollectVisitor();
+        rule.acceptChildren(variants);
+
+        RulePaths paths = new RulePaths();
+        for (Variant variant : variants.variants) {
+            CollectVisitor subrules = new CollectVisitor();
+            variant.acceptChildren(subrules);
+
+            Set<BitSet> product = Set.of(new BitSet());
+            for (Subrule subrule : subrules.subrules) {
+                if (subrule.getRule() != null) {
+                    Set<BitSet> subrulePaths = paths(subrule.getRule(), subrule.getName());
+                    if (subrulePaths != null) {
+                        product = product(product, subrulePaths);
+                    }
+                }
             }
+            (variant.returns() ? paths.returning : paths.silent).addAll(product);
         }
+        return paths;
     }
 
     /**
-     * Transform a tree so each reachable path is a full path, so no siblings need to be considered anymore.
-     * It means: all siblings are put under all reachable paths of the first child; recursively bottom up.
-     * Generally, it is one possible implementation of generating combinations.
-     * <p>
-     * Rule A
-     * Variant
-     * Subrule B
-     * Variant
-     * Subrule E
-     * Variant (return "aa")
-     * Subrule C
-     * Subrule D
-     * Subrule F
-     * <p>
-     * Result:
-     * Rule A
-     * Variant
-     * Subrule B
-     * Variant
-     * Subrule E
-     * Subrule F
-     * Variant (return "aa")
-     * Subrule C
-     * Subrule D
-     * Subrule F
+     * Returns all unions of one set from the first and one set from the second
+     * collection.
+     *
+     * @param first the first collection
+     * @param second the second collection
+     * @return the unions, without duplicates
      */
-    private static class UniqueSubrulePathsVisitor extends Visitor {
-
-        @Override
-        public void visit(Variant variant) throws SemanticException {
-            variant.acceptChildren(this);
-
-            // prepare subrule children on a side
-            List<Subrule> children = new ArrayList<>();
-            variant.getChildren().forEach(t -> children.add((Subrule) t));
-
-            if (!children.isEmpty()) {
-                Subrule firstChild = children.get(0);
-                children.remove(0);
-
-                // add siblings to the first child
-                for (Subrule child : children) {
-                    child.remove();
-                    addRecursively(firstChild, child);
-                }
+    private static Set<BitSet> product(Set<BitSet> first, Set<BitSet> second) {
+        Set<BitSet> result = new HashSet<>();
+        for (BitSet a : first) {
+            for (BitSet b : second) {
+                BitSet union = (BitSet) a.clone();
+                union.or(b);
+                result.add(union);
             }
         }
+        return result;
+    }
 
-        private void addRecursively(TreeNode where, TreeNode what) {
-            if (where.childCount() == 0) {
-                where.addChild(what.copy());
-            } else {
-                for (TreeNode child : where.getChildren()) {
-                    addRecursively(child, what);
-                }
-            }
-        }
+    private int bitOf(String name) {
+        return nameBits.computeIfAbsent(name, key -> {
+            names.add(key);
+            return names.size() - 1;
+        });
     }
 
+    private Set<String> toNames(BitSet path) {
+        Set<String> result = new HashSet<>();
+        for (int bit = path.nextSetBit(0); bit != -1; bit = path.nextSetBit(bit + 1)) {
+            result.add(names.get(bit));
+        }
+        return result;
+    }
 
     /**
-     * Tough logic of eliminating variants. Tough, because variants can but don't have to return.
-     * <p>
-     * Returning variants peculiarities:
-     * - if the parent is rule, we must add artificial subrule and add variant's children to it before removing the
-     * variant (otherwise rule "A" wont be recognized)
-     * <p>
-     * Rule A                        Rule A
-     * Variant (return "a")   ->     Subrule A
-     * ...                           ...
-     * <p>
-     * - if variant has no children, instead just removing variant we must replace it with artificial subrule
-     * <p>
-     * Subrule C                         Subrule D
-     * Variant                           Subrule D
-     * Subrule D                ->   Subrule C
-     * Variant (return "d")
-     * Variant (return "c")
-     * <p>
-     * Non-returning variants peculiarities:
-     * - non-returning variants and it's parent subrules must be eliminated when the parent has only one child
-     * (this variant)
-     * <p>
-     * Rule A                            Rule A
-     * Subrule B                         Subrule C
-     * Variant                   ->
-     * Subrule C
-     * Variant (return "c")
-     * <p>
-     * - if parent of non-returning variant has more children, we must keep it:
-     * <p>
-     * Rule A                            Rule A
-     * Subrule B                         Subrule C
-     * Variant                         Subrule B
-     * Subrule C               ->      Subrule B
-     * Variant (return "c")
-     * Variant (return "b")
+     * The sets of names decoded by the variants of one rule, split by whether
+     * the variant returns a value.
      */
-    private static class EliminateVariantsVisitor extends Visitor {
-
-        @Override
-        public void visit(Variant variant) throws SemanticException {
-            variant.acceptChildren(this);
+    private static class RulePaths {
+        final Set<BitSet> returning = new HashSet<>();
+        final Set<BitSet> silent = new HashSet<>();
 
-            TreeNode parent = variant.getParent();
-            List<TreeNode> children = variant.getChildren();
-            children.forEach(TreeNode::remove);
-            if (!variant.returns() && parent != null) {
-                TreeNode parentParent = parent.getParent();
-                if (parentParent != null) {
-                    parentParent.addChildren(children);
-                    if (parent.childCount() == 1) {
-                        parent.remove();
-                    }
-                } else {
-                    parent.addChildren(children);
-                }
-            } else if (parent != null) {
-                // variant returns
-                if (parent instanceof Rule) {
-                    Subrule artificial = new Subrule(((Rule) parent).getNames().get(0));
-                    artificial.addChildren(children);
-                    parent.addChild(artificial);
-                } else {
-                    if (children.isEmpty()) {
-                        Subrule artificial = new Subrule(((Subrule) parent).getName());
-                        parent.addChild(artificial);
-                    } else {
-                        parent.addChildren(children);
-                    }
-                }
-            }
-            variant.remove();
+        boolean isEmpty() {
+            return returning.isEmpty() && silent.isEmpty();
         }
     }
 
     /**
-     * Collects all unique paths.
+     * Collects the variants of a rule, or the subrules of a variant, skipping
+     * masks and patterns.
      */
-    private static class CollectPathsVisitor extends Visitor {
-        final Set<Set<String>> allPaths = new HashSet<>();
-        private Set<String> currentPath = new HashSet<>();
+    private static class CollectVisitor extends Visitor {
+        final List<Variant> variants = new ArrayList<>();
+        final List<Subrule> subrules = new ArrayList<>();
 
         @Override
-        public void visit(Subrule subrule) throws SemanticException {
-            Set<String> old = new HashSet<>(currentPath);
-            currentPath.add(subrule.getName());
+        public void visit(Variant variant) {
+            variants.add(variant);
+        }
 
-            if (subrule.childCount() == 0) {
-                allPaths.add(currentPath);
-            } else {
-                subrule.acceptChildren(this);
-            }
-            currentPath = old;
+        @Override
+        public void visit(Subrule subrule) {
+            subrules.add(subrule);
         }
     }
 }
@@ -0,0 +1,181 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.passes;
+
+import net.emustudio.edigen.SemanticException;
+import net.emustudio.edigen.Visitor;
+import net.emustudio.edigen.misc.BitSequence;
+import net.emustudio.edigen.nodes.*;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A visitor which merges the decision trees of multiple root rules into the
+ * tree of the first root rule.
+ * <p>
+ * Without merging, an instruction of a later root rule is recognized only
+ * after all previous root rules fail, so the same unit is dispatched multiple
+ * times. If the root rules start with the same mask, patterns of the later
+ * root rule which the first root rule does not contain are copied into the
+ * first root rule, so they are dispatched at once.
+ * <p>
+ * The priority of root rules is preserved:
+ * <ul>
+ * <li>patterns present in multiple root rules are kept only in the first one
+ * (when it fails, the next root rule is tried as before),</li>
+ * <li>merging stops at a root rule which starts with a different mask or which
+ * contains a default pattern (which would match the remaining inputs).</li>
+ * </ul>
+ * Nothing is merged if the first root rule is also used as a subrule, since
+ * the merged patterns would change its meaning there.
+ * The copied variants remember their original rule, so the generated code
+ * stores the values under the original rule constant.
+ * <p>
+ * Expectation of the tree at input:
+ * <pre>
+ *   Rule (first root)
+ *     Mask
+ *       Pattern
+ *   Rule (next root)
+ *     Mask (same as the first one)
+ *       Pattern (not present in the first root)
+ *       Pattern (present in the first root)
+ * </pre>
+ * <p>
+ * Expectation of the tree at output:
+ * <pre>
+ *   Rule (first root)
+ *     Mask
+ *       Pattern
+ *       Pattern (copy, variants owned by the next root)
+ *   Rule (next root)
+ *     Mask
+ *       Pattern
+ *       Pattern
+ * </pre>
+ */
+public class MergeRootRulesVisitor extends Visitor {
+
+    /**
+     * Merges the root rules, in their priority order.
+     *
+     * @param decoder the decoder node
+     * @throws SemanticException never
+     */
+    @Override
+    public void visit(Decoder decoder) throws SemanticException {
+        Iterator<Rule> rootRules = decoder.getRootRules().iterator();
+        Rule first = rootRules.next();
+        Mask target = getTopMask(first);
+        if (target == null || hasDefaultPattern(target) || isReferenced(decoder, first)) {
+            return;
+        }
+
+        Set<BitSequence> targetPatterns = new HashSet<>();
+        for (TreeNode child : target.getChildren()) {
+            targetPatterns.add(((Pattern) child).getBits());
+        }
+
+        while (rootRules.hasNext()) {
+            Rule rule = rootRules.next();
+            Mask mask = getTopMask(rule);
+            if (mask == null || !mask.getBits().equals(target.getBits())
+                    || !Objects.equals(mask.getStart(), target.getStart())) {
+                return;
+            }
+
+            for (TreeNode child : mask.getChildren()) {
+                Pattern pattern = (Pattern) child;
+                if (pattern.getBits().getLength() != 0 && targetPatterns.add(pattern.getBits())) {
+                    TreeNode copy = pattern.copy();
+                    setOwner(copy, rule);
+                    target.addChild(copy);
+                }
+            }
+
+            if (hasDefaultPattern(mask)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the first mask of the rule.
+     *
+     * @param rule the rule node
+     * @return the mask, or null if it is zero-only (it matches any input)
+     */
+    private Mask getTopMask(Rule rule) {
+        Mask mask = (Mask) rule.getChild(0);
+        return mask.getBits().containsOnly(false) ? null : mask;
+    }
+
+    /**
+     * Returns true if the mask has a pattern matching all inputs not matched
+     * by other patterns.
+     *
+     * @param mask the mask node
+     * @return true if the mask contains a default pattern
+     */
+    private boolean hasDefaultPattern(Mask mask) {
+        for (TreeNode child : mask.getChildren()) {
+            if (((Pattern) child).getBits().getLength() == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the rule is used as a subrule anywhere in the subtree.
+     *
+     * @param node the subtree root
+     * @param rule the rule node
+     * @return true if a subrule refers to the rule
+     */
+    private boolean isReferenced(TreeNode node, Rule rule) {
+        if (node instanceof Subrule && ((Subrule) node).getRule() == rule) {
+            return true;
+        }
+        for (TreeNode child : node.getChildren()) {
+            if (isReferenced(child, rule)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the owner rule of all variants in the copied subtree.
+     *
+     * @param node the subtree root
+     * @param owner the original root rule
+     */
+    private void setOwner(TreeNode node, Rule owner) {
+        if (node instanceof Variant && ((Variant) node).getOwner() == null) {
+            ((Variant) node).setOwner(owner);
+        }
+        for (TreeNode child : node.getChildren()) {
+            setOwner(child, owner);
+        }
+    }
+}
@@ -84,10 +84,12 @@ public class ResolveNamesVisitor extends Visitor {
     }
 
     /**
-     * Associates the variant with the subrule which it returns.
+     * Associates the variant with the subrule which it returns, and its
+     * control flow with the subrule containing the target.
      *
      * @param variant the variant node
-     * @throws SemanticException if the variant returns nonexistent subrule
+     * @throws SemanticException if the variant returns nonexistent subrule or
+     *         the flow target is not a subrule of the variant
      */
     @Override
     public void visit(Variant variant) throws SemanticException {
@@ -106,6 +108,11 @@ public class ResolveNamesVisitor extends Visitor {
                 throw new SemanticException("Variant returns nonexistent"
                         + " subrule \"" + searchedSubrule + '"', variant);
         }
+
+        Flow flow = variant.getFlow();
+        if (flow != null && flow.getTarget() != null) {
+            flow.setTarget(findFlowTarget(variant, flow.getTarget().getName()));
+        }
     }
 
     /**
@@ -159,6 +166,24 @@ public class ResolveNamesVisitor extends Visitor {
         }
     }
 
+    private Subrule findFlowTarget(Variant variant, String name) throws SemanticException {
+        Subrule target = null;
+
+        for (TreeNode child : variant.getChildren()) {
+            if (child instanceof Subrule && ((Subrule) child).getName().equals(name)) {
+                if (target != null)
+                    throw new SemanticException("Control flow target \"" + name
+                            + "\" is present multiple times in the variant", variant);
+                target = (Subrule) child;
+            }
+        }
+
+        if (target == null)
+            throw new SemanticException("Control flow target \"" + name
+                    + "\" is not a subrule of the variant", variant);
+        return target;
+    }
+
     private Rule inferImplicitRule(Subrule originalSubrule) {
         Rule rule = new Rule(originalSubrule.getName());
         Variant variant = new Variant();
@@ -22,7 +22,9 @@ import net.emustudio.edigen.SemanticException;
 import net.emustudio.edigen.Visitor;
 import net.emustudio.edigen.nodes.*;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -34,8 +36,26 @@ public class SemanticCheckVisitor extends Visitor {
     private final Set<String> valueSet = new HashSet<>();
     private boolean variantReturns;
     private final Set<String> returningRules = new HashSet<>();
+    private final List<Subrule> flowTargets = new ArrayList<>();
     private Subrule subruleWithoutLength;
 
+    /**
+     * Checks the rules and then the control flow targets, which can refer to
+     * rules defined later.
+     * @param decoder the decoder node
+     * @throws SemanticException on semantic error
+     */
+    @Override
+    public void visit(Decoder decoder) throws SemanticException {
+        decoder.acceptChildren(this);
+
+        for (Subrule target : flowTargets) {
+            if (!returningRules.contains(target.getName()))
+                throw new SemanticException("Rule \"" + target.getName() + "\" never"
+                        + " returns a value, but is used as a control flow target", target);
+        }
+    }
+
     /**
      * Adds the rule to the set of returning rules if one of its variants
      * return.
@@ -57,14 +77,26 @@ public class SemanticCheckVisitor extends Visitor {
      * subrule errors.
      *
      * The subrule without length must occur only at the end of the variant.
+     * A control flow can be declared only for a variant returning a string,
+     * since the string constant identifies the variant in the decoded
+     * instruction.
      * @param variant the variant node
-     * @throws SemanticException on subrule error
+     * @throws SemanticException on subrule or control flow error
      */
     @Override
     public void visit(Variant variant) throws SemanticException {
         if (variant.returns())
             variantReturns = true;
 
+        Flow flow = variant.getFlow();
+        if (flow != null) {
+            if (variant.getReturnString() == null)
+                throw new SemanticException("Control flow can be declared only"
+                        + " for a variant returning a string", variant);
+            if (flow.getTarget() != null)
+                flowTargets.add(flow.getTarget());
+        }
+
         subruleWithoutLength = null;
         variant.acceptChildren(this);
     }
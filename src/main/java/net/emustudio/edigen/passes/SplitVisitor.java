@@ -21,6 +21,7 @@ package net.emustudio.edigen.passes;
 import net.emustudio.edigen.SemanticException;
 import net.emustudio.edigen.Visitor;
 import net.emustudio.edigen.misc.BitSequence;
+import net.emustudio.edigen.nodes.Decoder;
 import net.emustudio.edigen.nodes.Mask;
 import net.emustudio.edigen.nodes.Pattern;
 import net.emustudio.edigen.nodes.TreeNode;
@@ -30,7 +31,7 @@ import static net.emustudio.edigen.nodes.Decoder.UNIT_SIZE_BITS;
 
 /**
  * A visitor which splits the patterns and mask into smaller pieces of the same
- * length (max length is equal to decoder unit size).
+ * length (max length is equal to decoder unit size, {@link Decoder#getUnitSize()}).
  * <p>
  * This is necessary to support instructions with variable length, especially
  * instructions with length larger than <code>int</code> or <code>long</code>
@@ -57,9 +58,22 @@ import static net.emustudio.edigen.nodes.Decoder.UNIT_SIZE_BITS;
  */
 public class SplitVisitor extends Visitor {
 
+    private int unitSize = UNIT_SIZE_BITS;
     private BitSequence maskBits;
     private BitSequence patternBits;
 
+    /**
+     * Remembers the unit size of the decoder.
+     *
+     * @param decoder the decoder node
+     * @throws SemanticException never
+     */
+    @Override
+    public void visit(Decoder decoder) throws SemanticException {
+        unitSize = decoder.getUnitSize();
+        decoder.acceptChildren(this);
+    }
+
     /**
      * Splits the mask and pattern and adds the split pieces to the variant.
      *
@@ -76,14 +90,14 @@ public class SplitVisitor extends Visitor {
     public void visit(Variant variant) throws SemanticException {
         variant.acceptChildren(this);
 
-        BitSequence[] masks = maskBits.split(UNIT_SIZE_BITS);
-        BitSequence[] patterns = patternBits.split(UNIT_SIZE_BITS);
+        BitSequence[] masks = maskBits.split(unitSize);
+        BitSequence[] patterns = patternBits.split(unitSize);
 
         TreeNode parent = variant;
 
         for (int i = 0; i < masks.length; i++) {
             Mask mask = new Mask(masks[i]);
-            mask.setStart(i * UNIT_SIZE_BITS);
+            mask.setStart(i * unitSize);
 
             Pattern pattern = new Pattern(patterns[i]);
 
@@ -0,0 +1,63 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.generation;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class FormatSegmentsTest {
+
+    @Test
+    public void testPlaceholdersBetweenLiterals() {
+        FormatSegments segments = new FormatSegments("ld %s, %X", 2);
+        assertEquals(List.of("ld ", ", ", ""), segments.getLiterals());
+        assertEquals(List.of("s", "X"), segments.getConversions());
+    }
+
+    @Test
+    public void testNoPlaceholders() {
+        FormatSegments segments = new FormatSegments("nop", 0);
+        assertEquals(List.of("nop"), segments.getLiterals());
+        assertEquals(List.of(), segments.getConversions());
+    }
+
+    @Test
+    public void testPlaceholdersLimitedByParameterCount() {
+        FormatSegments segments = new FormatSegments("%s %d %x", 2);
+        assertEquals(List.of("", " ", " %x"), segments.getLiterals());
+        assertEquals(List.of("s", "d"), segments.getConversions());
+    }
+
+    @Test
+    public void testTrailingPercentSignIsLiteral() {
+        FormatSegments segments = new FormatSegments("%d%", 2);
+        assertEquals(List.of("", "%"), segments.getLiterals());
+        assertEquals(List.of("d"), segments.getConversions());
+    }
+
+    @Test
+    public void testEscapedConversion() {
+        FormatSegments segments = new FormatSegments("a%\\tb", 1);
+        assertEquals(List.of("a", "b"), segments.getLiterals());
+        assertEquals(List.of("\\t"), segments.getConversions());
+    }
+}
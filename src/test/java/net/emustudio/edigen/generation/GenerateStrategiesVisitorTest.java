@@ -0,0 +1,69 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.generation;
+
+import net.emustudio.edigen.SemanticException;
+import net.emustudio.edigen.nodes.Specification;
+import net.emustudio.edigen.parser.ParseException;
+import net.emustudio.edigen.parser.Parser;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class GenerateStrategiesVisitorTest {
+
+    @Test
+    public void testMethodNames() {
+        assertEquals("absolute", GenerateStrategiesVisitor.getMethodName(List.of("absolute")));
+        assertEquals("fused_bit_reverse__absolute",
+                GenerateStrategiesVisitor.getMethodName(List.of("bit_reverse", "absolute")));
+    }
+
+    @Test
+    public void testChainsAreFusedOnce() throws ParseException, SemanticException {
+        String code = generateStrategies(
+                "root instruction;\n" +
+                        "instruction = \"a\": 0x00 imm8 | \"b\": 0x01 imm8 imm8;\n" +
+                        "imm8 = imm8: imm8(8);\n" +
+                        "%%\n" +
+                        "\"%s %d\" = instruction imm8(bit_reverse, absolute);\n" +
+                        "\"%s %d\" = instruction imm8(bit_reverse, absolute);\n" +
+                        "\"%s %d\" = instruction imm8(absolute);");
+
+        assertEquals("public static long fused_bit_reverse__absolute(long value, int bitLength) {\n" +
+                "    return absolute(bit_reverse(value, bitLength), bitLength);\n" +
+                "}\n" +
+                "public static Bits fused_bit_reverse__absolute(Bits bits) {\n" +
+                "    return absolute(bit_reverse(bits));\n" +
+                "}\n", code.replace(System.lineSeparator(), "\n"));
+    }
+
+    private String generateStrategies(String input) throws ParseException, SemanticException {
+        Parser parser = new Parser(new StringReader(input));
+        Specification specification = parser.parse();
+
+        StringWriter writer = new StringWriter();
+        specification.getDisassembler().accept(new GenerateStrategiesVisitor(writer));
+        return writer.toString();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.generation;
+
+import net.emustudio.edigen.SemanticException;
+import net.emustudio.edigen.Visitor;
+import net.emustudio.edigen.nodes.Specification;
+import net.emustudio.edigen.parser.ParseException;
+import net.emustudio.edigen.parser.Parser;
+import net.emustudio.edigen.passes.*;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GenerateTablesVisitorTest {
+
+    @Test
+    public void testDenseTable() throws ParseException, SemanticException {
+        String code = generateTables(
+                "root instruction;\n" +
+                        "instruction = \"a\": 0x00 | \"b\": 0x01 | \"c\": 0x02;\n" +
+                        "%%\n" +
+                        "\"%s\" = instruction;");
+        assertTrue(code.contains("DENSE, 0, 8, 0xff, 0,"));
+        assertTrue(code.contains("STRING, Dec.INSTRUCTION, 0, Dec.A, RETURN"));
+    }
+
+    @Test
+    public void testSparseTable() throws ParseException, SemanticException {
+        String code = generateTables(
+                "root instruction;\n" +
+                        "instruction = \"a\": 0x0001 | \"b\": 0x8000;\n" +
+                        "%%\n" +
+                        "\"%s\" = instruction;");
+        assertTrue(code.contains("SPARSE, 0, 16, 0xffff, 2, 0, 0x1, 0x8000,"));
+    }
+
+    @Test
+    public void testRootRuleFallback() throws ParseException, SemanticException {
+        StringWriter writer = new StringWriter();
+        GenerateTablesVisitor visitor = new GenerateTablesVisitor(writer, "Dec");
+        transform(
+                "root instruction, data;\n" +
+                        "instruction = \"a\": 0x00;\n" +
+                        "data = data: data(8);\n" +
+                        "%%\n" +
+                        "\"%s\" = instruction;\n" +
+                        "\"%X\" = data;"
+        ).getDecoder().accept(visitor);
+
+        String code = writer.toString();
+        assertTrue(code.contains("FALLBACK, 270, 0,"));
+        assertTrue(code.contains("// 270: rule data"));
+        assertEquals("interpret(4, 0, 0)", visitor.getRootRuleCall());
+    }
+
+    @Test
+    public void testSubruleCall() throws ParseException, SemanticException {
+        String code = generateTables(
+                "root instruction;\n" +
+                        "instruction = \"a\": 0x0 reg(4);\n" +
+                        "reg = reg: reg(4);\n" +
+                        "%%\n" +
+                        "\"%s %d\" = instruction reg;");
+        assertTrue(code.contains("CALL, 31, 4, 0, RETURN"));
+        assertTrue(code.contains("BITS, Dec.REG, 0, 4, RETURN"));
+    }
+
+    @Test
+    public void testWideMask() throws ParseException, SemanticException {
+        Specification specification = parse(
+                "root instruction;\n" +
+                        "instruction = \"a\": 0x0102030405 | \"b\": 0x0102030406 imm(40);\n" +
+                        "imm = imm: imm(40);\n" +
+                        "%%\n" +
+                        "\"%s\" = instruction;\n" +
+                        "\"%s %X\" = instruction imm;");
+        specification.getDecoder().setUnitSize(64);
+        transform(specification);
+
+        StringWriter writer = new StringWriter();
+        specification.getDecoder().accept(new GenerateTablesVisitor(writer, "Dec"));
+
+        String code = writer.toString();
+        assertTrue(code.contains("WIDE, 0, 40, 0xff, 0xffffffff, 1, 11, 0x1, 0x2030405, 30,"));
+        assertTrue(code.contains("WIDE, 0, 64, 0xffffffff, 0xff000000, 1,"));
+        assertTrue(code.contains("WIDE_BITS, Dec.IMM, 0, 40, RETURN"));
+    }
+
+    @Test(expected = SemanticException.class)
+    public void testTooLongReturnedValue() throws ParseException, SemanticException {
+        generateTables(
+                "root instruction;\n" +
+                        "instruction = instruction: instruction(33);\n" +
+                        "%%\n" +
+                        "\"%d\" = instruction;");
+    }
+
+    private String generateTables(String input) throws ParseException, SemanticException {
+        StringWriter writer = new StringWriter();
+        transform(input).getDecoder().accept(new GenerateTablesVisitor(writer, "Dec"));
+        return writer.toString();
+    }
+
+    private Specification transform(String input) throws ParseException, SemanticException {
+        return transform(parse(input));
+    }
+
+    private Specification parse(String input) throws ParseException {
+        return new Parser(new StringReader(input)).parse();
+    }
+
+    private Specification transform(Specification specification) throws SemanticException {
+        Visitor[] transforms = {
+                new ResolveNamesVisitor(),
+                new DetectRootRulesVisitor(),
+                new DetectUnusedRulesVisitor(),
+                new SemanticCheckVisitor(),
+                new MergePatternsVisitor(),
+                new SortVisitor(),
+                new SplitVisitor(),
+                new PushDownVariantsVisitor(),
+                new GroupVisitor(),
+                new DetectAmbiguousVisitor(),
+                new NarrowMasksVisitor(),
+                new RemoveUnreachablePatternsVisitor(),
+                new DetectUnreachableFormatsVisitor()
+        };
+
+        for (Visitor visitor : transforms) {
+            specification.accept(visitor);
+        }
+        return specification;
+    }
+}
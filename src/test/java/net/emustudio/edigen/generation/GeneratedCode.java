@@ -0,0 +1,199 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.generation;
+
+import net.emustudio.edigen.Visitor;
+import net.emustudio.edigen.nodes.Decoder;
+import net.emustudio.edigen.nodes.Specification;
+import net.emustudio.edigen.parser.Parser;
+import net.emustudio.edigen.passes.*;
+import net.emustudio.emulib.plugins.memory.MemoryContext;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Generates the decoder and the disassembler from a specification, compiles
+ * them and loads the resulting classes.
+ */
+public class GeneratedCode {
+    public static final String DECODER = "gen.Dec";
+    public static final String DISASSEMBLER = "gen.Dis";
+
+    private final ClassLoader loader;
+
+    private GeneratedCode(ClassLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Generates and compiles the code.
+     * @param specification the specification text
+     * @return the loaded code
+     * @throws Exception when the generation or the compilation fails
+     */
+    public static GeneratedCode generate(String specification) throws Exception {
+        return generate(specification, Decoder.UNIT_SIZE_BITS, false);
+    }
+
+    /**
+     * Generates and compiles the code with the given decoder options.
+     * @param specification the specification text
+     * @param unitSize the decoder unit size in bits
+     * @param tableDriven true if the table-driven decoder should be generated
+     * @return the loaded code
+     * @throws Exception when the generation or the compilation fails
+     */
+    public static GeneratedCode generate(String specification, int unitSize, boolean tableDriven) throws Exception {
+        Specification tree = new Parser(new StringReader(specification)).parse();
+        tree.getDecoder().setUnitSize(unitSize);
+        transform(tree);
+
+        Path directory = Files.createTempDirectory("edigen");
+        DecoderGenerator decoder = new DecoderGenerator(tree.getDecoder(), DECODER);
+        decoder.setOutputDirectory(directory.toString());
+        decoder.setTableDriven(tableDriven);
+        decoder.generate();
+
+        DisassemblerGenerator disassembler = new DisassemblerGenerator(tree.getDisassembler(), tree.getDecoder(),
+                DISASSEMBLER, DECODER);
+        disassembler.setOutputDirectory(directory.toString());
+        disassembler.generate();
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int status = compiler.run(null, null, null,
+                "-d", directory.toString(),
+                "-cp", System.getProperty("java.class.path"),
+                directory.resolve("Dec.java").toString(),
+                directory.resolve("Dis.java").toString());
+        assertEquals("The generated code does not compile", 0, status);
+
+        return new GeneratedCode(new URLClassLoader(new URL[]{directory.toUri().toURL()},
+                GeneratedCode.class.getClassLoader()));
+    }
+
+    /**
+     * Loads a generated class.
+     * @param name the binary class name
+     * @return the class
+     * @throws ClassNotFoundException if the class was not generated
+     */
+    public Class<?> load(String name) throws ClassNotFoundException {
+        return Class.forName(name, true, loader);
+    }
+
+    private static void transform(Specification specification) throws Exception {
+        Visitor[] transforms = {
+                new ResolveNamesVisitor(),
+                new DetectRootRulesVisitor(),
+                new DetectUnusedRulesVisitor(),
+                new SemanticCheckVisitor(),
+                new MergePatternsVisitor(),
+                new SortVisitor(),
+                new SplitVisitor(),
+                new PushDownVariantsVisitor(),
+                new GroupVisitor(),
+                new DetectAmbiguousVisitor(),
+                new NarrowMasksVisitor(),
+                new RemoveUnreachablePatternsVisitor(),
+                new DetectUnreachableFormatsVisitor(),
+                new MergeRootRulesVisitor()
+        };
+
+        for (Visitor visitor : transforms) {
+            specification.accept(visitor);
+        }
+    }
+
+    /**
+     * A memory of bytes. Cells behind the end read as zero.
+     */
+    public static class Memory {
+        private final byte[] cells;
+        private final List<MemoryContext.MemoryListener> listeners = new ArrayList<>();
+        private final MemoryContext<?> context;
+
+        public Memory(int... cells) {
+            this.cells = new byte[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                this.cells[i] = (byte) cells[i];
+            }
+            this.context = (MemoryContext<?>) Proxy.newProxyInstance(
+                    MemoryContext.class.getClassLoader(),
+                    new Class<?>[]{MemoryContext.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "read":
+                                if (args.length == 1) {
+                                    return read((Integer) args[0]);
+                                }
+                                Byte[] result = new Byte[(Integer) args[1]];
+                                for (int i = 0; i < result.length; i++) {
+                                    result[i] = read((Integer) args[0] + i);
+                                }
+                                return result;
+                            case "getSize":
+                                return this.cells.length;
+                            case "addMemoryListener":
+                                listeners.add((MemoryContext.MemoryListener) args[0]);
+                                return null;
+                            case "removeMemoryListener":
+                                listeners.remove((MemoryContext.MemoryListener) args[0]);
+                                return null;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        public MemoryContext<?> getContext() {
+            return context;
+        }
+
+        /**
+         * Changes one cell and notifies the listeners.
+         * @param address the address of the cell
+         * @param value the new value
+         */
+        public void write(int address, int value) {
+            cells[address] = (byte) value;
+            for (MemoryContext.MemoryListener listener : new ArrayList<>(listeners)) {
+                listener.memoryContentChanged(address, address);
+            }
+        }
+
+        private Byte read(int address) {
+            return (address < cells.length) ? cells[address] : 0;
+        }
+    }
+}
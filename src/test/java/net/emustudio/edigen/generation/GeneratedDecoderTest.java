@@ -0,0 +1,201 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.generation;
+
+import net.emustudio.edigen.nodes.Decoder;
+import net.emustudio.emulib.plugins.cpu.DecodedInstruction;
+import net.emustudio.emulib.plugins.cpu.InvalidInstructionException;
+import net.emustudio.emulib.plugins.memory.MemoryContext;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static net.emustudio.edigen.generation.GeneratedCode.DECODER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the table-driven decoder with the switch-based decoder by decoding
+ * the same memory at every address.
+ */
+public class GeneratedDecoderTest {
+    private static final int RANDOM_BYTES = 2048;
+
+    @Test
+    public void testDenseTable() throws Exception {
+        assertSameDecoding(
+                "root instruction;\n" +
+                        "instruction = \"a\": 0x00 | \"b\": 0x01 | \"c\": 0x02;\n" +
+                        "%%\n" +
+                        "\"%s\" = instruction;",
+                Decoder.UNIT_SIZE_BITS,
+                0x00, 0x01, 0x02, 0x03);
+    }
+
+    @Test
+    public void testSparseTable() throws Exception {
+        assertSameDecoding(
+                "root instruction;\n" +
+                        "instruction = \"a\": 0x0001 | \"b\": 0x8000;\n" +
+                        "%%\n" +
+                        "\"%s\" = instruction;",
+                Decoder.UNIT_SIZE_BITS,
+                0x00, 0x01, 0x80, 0x00, 0x80, 0x01);
+    }
+
+    @Test
+    public void testRootRuleFallback() throws Exception {
+        assertSameDecoding(
+                "root instruction, data;\n" +
+                        "instruction = \"a\": 0x00;\n" +
+                        "data = data: data(8);\n" +
+                        "%%\n" +
+                        "\"%s\" = instruction;\n" +
+                        "\"%X\" = data;",
+                Decoder.UNIT_SIZE_BITS,
+                0x00, 0x01, 0xFF);
+    }
+
+    @Test
+    public void testSubruleCall() throws Exception {
+        assertSameDecoding(
+                "root instruction;\n" +
+                        "instruction = \"a\": 0x0 reg(4) | \"b\": 0x1 reg[1](4) 0x5;\n" +
+                        "reg = reg: reg(4);\n" +
+                        "%%\n" +
+                        "\"%s %d\" = instruction reg;",
+                Decoder.UNIT_SIZE_BITS,
+                0x05, 0x1F, 0x50, 0x17, 0x50);
+    }
+
+    @Test
+    public void testWideMask() throws Exception {
+        assertSameDecoding(
+                "root instruction;\n" +
+                        "instruction = \"a\": 0x0102030405 | \"b\": 0x0102030406 imm(40);\n" +
+                        "imm = imm: imm(40);\n" +
+                        "%%\n" +
+                        "\"%s\" = instruction;\n" +
+                        "\"%s %X\" = instruction imm;",
+                64,
+                0x01, 0x02, 0x03, 0x04, 0x05,
+                0x01, 0x02, 0x03, 0x04, 0x06, 0xFF, 0x80, 0x00, 0x12, 0x34,
+                0x01, 0x02, 0x03, 0x04, 0x07);
+    }
+
+    @Test
+    public void testMultipleRuleNames() throws Exception {
+        assertSameDecoding(
+                "root instruction, data;\n" +
+                        "instruction =\n" +
+                        "    \"add\": 0xE dst_reg(2) src_reg(2) |\n" +
+                        "    \"sub\": 0xF dst_reg(2) immediate(10);\n" +
+                        "data = data: data(32);\n" +
+                        "src_reg, dst_reg = \"X\": 00 | \"Y\": 01;\n" +
+                        "%%\n" +
+                        "\"%s %s, %s\" = instruction dst_reg src_reg;\n" +
+                        "\"%s %s, %d\" = instruction dst_reg immediate;\n" +
+                        "\"%x\" = data;",
+                Decoder.UNIT_SIZE_BITS,
+                0xE1, 0xF4, 0x03, 0xEC, 0xFB, 0xFF);
+    }
+
+    /**
+     * Generates both decoders and decodes the given bytes followed by random
+     * bytes at every address.
+     * @param specification the specification text
+     * @param unitSize the decoder unit size in bits
+     * @param bytes the bytes at the start of the memory
+     * @throws Exception when the generation fails
+     */
+    private static void assertSameDecoding(String specification, int unitSize, int... bytes) throws Exception {
+        int[] cells = new int[bytes.length + RANDOM_BYTES];
+        System.arraycopy(bytes, 0, cells, 0, bytes.length);
+        Random random = new Random(42);
+        for (int i = bytes.length; i < cells.length; i++) {
+            cells[i] = random.nextInt(256);
+        }
+        GeneratedCode.Memory memory = new GeneratedCode.Memory(cells);
+
+        net.emustudio.emulib.plugins.cpu.Decoder switches = newDecoder(
+                GeneratedCode.generate(specification, unitSize, false), memory);
+        net.emustudio.emulib.plugins.cpu.Decoder tables = newDecoder(
+                GeneratedCode.generate(specification, unitSize, true), memory);
+
+        int valid = 0;
+        for (int position = 0; position < cells.length; position++) {
+            String expected = describe(switches, position);
+            assertEquals("Different decoding at " + position, expected, describe(tables, position));
+            if (!expected.equals("invalid")) {
+                valid++;
+            }
+        }
+        assertTrue("No instruction was decoded", valid > 0);
+    }
+
+    private static net.emustudio.emulib.plugins.cpu.Decoder newDecoder(GeneratedCode code,
+                                                                       GeneratedCode.Memory memory) throws Exception {
+        return (net.emustudio.emulib.plugins.cpu.Decoder) code.load(DECODER)
+                .getConstructor(MemoryContext.class)
+                .newInstance(memory.getContext());
+    }
+
+    /**
+     * Decodes an instruction and describes all its values.
+     * <p>
+     * Numeric values are read as primitives, so that they are compared with
+     * their whole bit length.
+     * @param decoder the decoder
+     * @param position the address of the instruction
+     * @return the description, or "invalid" if the instruction is invalid
+     * @throws Exception when the values cannot be read
+     */
+    private static String describe(net.emustudio.emulib.plugins.cpu.Decoder decoder, int position) throws Exception {
+        DecodedInstruction instruction;
+        try {
+            instruction = decoder.decode(position);
+        } catch (InvalidInstructionException ex) {
+            return "invalid";
+        }
+
+        Method getLong = instruction.getClass().getMethod("getLong", int.class);
+        Method getBitLength = instruction.getClass().getMethod("getBitLength", int.class);
+        List<String> values = new ArrayList<>();
+        try {
+            for (int key : new TreeSet<>(instruction.getKeys())) {
+                String string = instruction.getString(key);
+                values.add(key + "=" + ((string != null) ? '"' + string + '"'
+                        : getLong.invoke(instruction, key) + "/" + getBitLength.invoke(instruction, key)));
+            }
+        } catch (InvocationTargetException ex) {
+            throw (Exception) ex.getCause();
+        }
+
+        StringBuilder image = new StringBuilder();
+        for (byte value : instruction.getImage()) {
+            image.append(String.format("%02x", value));
+        }
+        return values + " " + image + " (" + instruction.getLength() + ")";
+    }
+}
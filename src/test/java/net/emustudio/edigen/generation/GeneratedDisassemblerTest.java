@@ -0,0 +1,150 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.generation;
+
+import net.emustudio.emulib.plugins.cpu.DecodedInstruction;
+import net.emustudio.emulib.plugins.cpu.Decoder;
+import net.emustudio.emulib.plugins.memory.MemoryContext;
+import net.emustudio.emulib.runtime.interaction.Formatter;
+import org.junit.Test;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static net.emustudio.edigen.generation.GeneratedCode.DECODER;
+import static net.emustudio.edigen.generation.GeneratedCode.DISASSEMBLER;
+import static org.junit.Assert.assertEquals;
+
+public class GeneratedDisassemblerTest {
+
+    private static final String TWO_BYTE_SPECIFICATION =
+            "root instruction;\n" +
+                    "instruction = \"nop\": 0x00 | \"ld %X\": 0x01 imm8;\n" +
+                    "imm8 = imm8: imm8(8);\n" +
+                    "%%\n" +
+                    "\"%s\" = instruction imm8;\n" +
+                    "\"%s\" = instruction;";
+
+    @Test
+    public void testBoundaryIndexWithInstructionCrossingMemoryEnd() throws Exception {
+        GeneratedCode code = GeneratedCode.generate(TWO_BYTE_SPECIFICATION);
+        int[] cells = new int[64];
+        cells[63] = 0x01;
+        GeneratedCode.Memory memory = new GeneratedCode.Memory(cells);
+
+        Object disassembler = newDisassembler(code, memory);
+        Class<?> indexClass = code.load(DISASSEMBLER + "$BoundaryIndex");
+        Object index = indexClass.getConstructor(code.load(DISASSEMBLER), int.class).newInstance(disassembler, 0);
+
+        assertEquals(63, indexClass.getMethod("instructionPositionAt", int.class).invoke(index, 63));
+
+        memory.write(10, 0x01);
+
+        assertEquals(10, indexClass.getMethod("instructionPositionAt", int.class).invoke(index, 11));
+        assertEquals(63, indexClass.getMethod("instructionPositionAt", int.class).invoke(index, 63));
+    }
+
+    @Test
+    public void testStrategyChainIsAppliedToPrimitiveValue() throws Exception {
+        GeneratedCode code = GeneratedCode.generate(TWO_BYTE_SPECIFICATION.replace(
+                "\"%s\" = instruction imm8;", "\"%s\" = instruction imm8(bit_reverse, shift_right);"));
+        GeneratedCode.Memory memory = new GeneratedCode.Memory(0x01, 0x03);
+
+        assertEquals("ld 60", mnemonic(code, memory, 0));
+    }
+
+    @Test
+    public void testFastPathPrintsSameAsFormatter() throws Exception {
+        String specification = "root instruction;\n" +
+                "instruction = \"x %X\": 0x01 imm8 | \"d %d\": 0x02 imm8 |\n" +
+                "  \"y %x\": 0x03 imm32 | \"e %d\": 0x04 imm32;\n" +
+                "imm8 = imm8: imm8(8);\n" +
+                "imm32 = imm32: imm32(32);\n" +
+                "%%\n" +
+                "\"%s\" = instruction imm8;\n" +
+                "\"%s\" = instruction imm32;";
+        GeneratedCode code = GeneratedCode.generate(specification);
+
+        for (int value : new int[]{0x00, 0x0A, 0x7F, 0x80, 0xFF}) {
+            assertEquals("x " + format('X', value, 8), mnemonic(code, new GeneratedCode.Memory(0x01, value), 0));
+            assertEquals("d " + format('d', value, 8), mnemonic(code, new GeneratedCode.Memory(0x02, value), 0));
+        }
+        for (int value : new int[]{0, 0x0A, 0x7FFFFFFF, 0x80000000, 0xFFFFFFFE}) {
+            int[] cells = {0, value >>> 24, value >>> 16, value >>> 8, value};
+            cells[0] = 0x03;
+            assertEquals("y " + format('x', value, 32), mnemonic(code, new GeneratedCode.Memory(cells), 0));
+            cells[0] = 0x04;
+            assertEquals("e " + format('d', value, 32), mnemonic(code, new GeneratedCode.Memory(cells), 0));
+        }
+    }
+
+    @Test
+    public void testReachableDisassemblyFollowsSpecifiedFlow() throws Exception {
+        String specification = "root instruction;\n" +
+                "instruction = \"nop\": 0x00 |\n" +
+                "  \"jp %X\" [jump imm16(reverse_bytes)]: 0x01 imm16 |\n" +
+                "  \"jz %X\" [branch relative imm8]: 0x02 imm8 |\n" +
+                "  \"ret\" [stop]: 0x03;\n" +
+                "imm8 = imm8: imm8(8);\n" +
+                "imm16 = imm16: imm16(16);\n" +
+                "%%\n" +
+                "\"%s\" = instruction imm16;\n" +
+                "\"%s\" = instruction imm8;\n" +
+                "\"%s\" = instruction;";
+        GeneratedCode code = GeneratedCode.generate(specification);
+        GeneratedCode.Memory memory = new GeneratedCode.Memory(
+                0x02, 0x03,        // 0: jz 5
+                0x01, 0x08, 0x00,  // 2: jp 8
+                0x03,              // 5: ret
+                0xFF, 0xFF,        // 6: data
+                0x02, 0xFB,        // 8: jz 5
+                0x03);             // 10: ret
+
+        Object disassembler = newDisassembler(code, memory);
+        Map<?, ?> instructions = (Map<?, ?>) code.load(DISASSEMBLER)
+                .getMethod("disassembleReachable", int[].class)
+                .invoke(disassembler, (Object) new int[]{0});
+
+        assertEquals(List.of(0, 2, 5, 8, 10), new ArrayList<>(instructions.keySet()));
+    }
+
+    private static String format(char conversion, int value, int bitLength) {
+        DecodedInstruction instruction = new DecodedInstruction();
+        instruction.add(1, value, bitLength);
+        return Formatter.DEFAULT.format(conversion, instruction.getBits(1));
+    }
+
+    private static String mnemonic(GeneratedCode code, GeneratedCode.Memory memory, int position) throws Exception {
+        Object disassembler = newDisassembler(code, memory);
+        StringBuilder out = new StringBuilder();
+        code.load(DISASSEMBLER).getMethod("disassembleTo", int.class, StringBuilder.class)
+                .invoke(disassembler, position, out);
+        return out.substring(out.indexOf("\t") + 1);
+    }
+
+    private static Object newDisassembler(GeneratedCode code, GeneratedCode.Memory memory) throws Exception {
+        Constructor<?> decoderConstructor = code.load(DECODER).getConstructor(MemoryContext.class);
+        Decoder decoder = (Decoder) decoderConstructor.newInstance(memory.getContext());
+
+        Constructor<?> constructor = code.load(DISASSEMBLER).getConstructor(MemoryContext.class, Decoder.class);
+        return constructor.newInstance(memory.getContext(), decoder);
+    }
+}
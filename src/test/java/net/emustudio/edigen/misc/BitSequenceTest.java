@@ -197,4 +197,34 @@ public class BitSequenceTest {
         result = BitSequence.fromBinary("100001110").toHexadecimal();
         assertEquals(expected, result);
     }
+
+    /**
+     * Test of append, subSequence and and methods on sequences spanning
+     * multiple words, of class BitSequence.
+     */
+    @Test
+    public void testAcrossWordBoundaries() {
+        BitSequence bits = BitSequence.fromBinary("101");
+        BitSequence long1 = new BitSequence(100, true);
+        long1.set(70, false);
+        bits.append(long1);
+        bits.append(bits);
+
+        assertEquals(206, bits.getLength());
+        assertFalse(bits.get(73));
+        assertTrue(bits.get(103));
+        assertFalse(bits.get(104));
+        assertFalse(bits.get(176));
+
+        BitSequence sub = bits.subSequence(60, 80);
+        assertEquals(80, sub.getLength());
+        assertFalse(sub.get(13));
+        assertEquals(bits.subSequence(100, 7), BitSequence.fromBinary("1111011"));
+
+        BitSequence and = bits.and(new BitSequence(130, true));
+        assertEquals(130, and.getLength());
+        assertEquals(bits.subSequence(0, 130), and);
+        assertEquals("5", BitSequence.fromBinary("101").toHexadecimal());
+        assertEquals(bits.subSequence(0, 130).hashCode(), and.hashCode());
+    }
 }
@@ -95,4 +95,24 @@ public class DetectAmbiguousVisitorTest {
         decoder.addChild(rule);
         decoder.accept(new DetectAmbiguousVisitor());
     }
+
+    @Test
+    public void testDistinctPatternsUnderCommonMaskAreNotAmbiguous() throws SemanticException {
+        // rule = "a": 0000 | "b": 0001 | "c": 0110 | "d": 0111 | "e": 10 x(2) | "f": 11 x(2);
+        Rule rule = (Rule)mkRule("rule").addChildren(
+                mkMask("1111").addChildren(
+                        mkPattern("0000").addChild(mkVariant("a")),
+                        mkPattern("0001").addChild(mkVariant("b")),
+                        mkPattern("0110").addChild(mkVariant("c")),
+                        mkPattern("0111").addChild(mkVariant("d"))
+                ),
+                mkMask("1100").addChildren(
+                        mkPattern("1000").addChild(mkVariant("e")),
+                        mkPattern("1100").addChild(mkVariant("f"))
+                )
+        );
+
+        decoder.addChild(rule);
+        decoder.accept(new DetectAmbiguousVisitor());
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.passes;
+
+import net.emustudio.edigen.SemanticException;
+import net.emustudio.edigen.nodes.Decoder;
+import net.emustudio.edigen.nodes.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import static net.emustudio.edigen.passes.PassUtils.*;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DetectOpcodeCoverageVisitorTest {
+
+    @Test
+    public void testOnlyPatternsAreAssigned() throws SemanticException {
+        Rule rule = (Rule) mkRule("instruction").addChild(
+                mkMask("1111", 0).addChildren(
+                        nest(mkPattern("0001"), mkVariant("a")),
+                        nest(mkPattern("0010"), mkVariant("b"))
+                ));
+
+        DetectOpcodeCoverageVisitor visitor = detect(4, rule);
+
+        assertEquals(4, visitor.getCoverageBits());
+        assertArrayEquals(new long[]{0b0110}, visitor.getAssigned());
+    }
+
+    @Test
+    public void testDefaultPatternAssignsUnmatchedEncodings() throws SemanticException {
+        Rule rule = (Rule) mkRule("instruction").addChild(
+                mkMask("1100", 0).addChildren(
+                        nest(mkPattern("0100"), mkVariant("a")),
+                        nest(mkPattern(""), mkMask("0011", 0), mkPattern("0001"), mkVariant("b"))
+                ));
+
+        long[] assigned = detect(4, rule).getAssigned();
+
+        // 01xx, or xx01 for the other prefixes
+        assertArrayEquals(new long[]{1L << 1 | 0xF0L | 1L << 9 | 1L << 13}, assigned);
+    }
+
+    @Test
+    public void testDefaultPatternIsUnreachableWhenHiddenBitsAreCovered() throws SemanticException {
+        Rule covered = (Rule) mkRule("instruction").addChild(
+                mkMask("11111", 0).addChildren(
+                        nest(mkPattern("00010"), mkMask("1111", 0), mkPattern("0000"), mkVariant("a")),
+                        nest(mkPattern("00011"), mkMask("1111", 0), mkPattern("0000"), mkVariant("b")),
+                        nest(mkPattern(""), mkVariant("c"))
+                ));
+        Rule partial = (Rule) mkRule("instruction").addChild(
+                mkMask("11111", 0).addChildren(
+                        nest(mkPattern("00010"), mkMask("1111", 0), mkPattern("0000"), mkVariant("a")),
+                        nest(mkPattern(""), mkVariant("c"))
+                ));
+
+        assertArrayEquals(new long[]{0xFFFDL}, detect(4, covered).getAssigned());
+        assertArrayEquals(new long[]{0xFFFFL}, detect(4, partial).getAssigned());
+    }
+
+    @Test
+    public void testSubruleIsCoveredAtItsOffset() throws SemanticException {
+        Rule argument = (Rule) mkRule("argument").addChild(
+                mkMask("1111", 0).addChild(nest(mkPattern("1010"), mkVariant("x"))));
+        Rule rule = (Rule) mkRule("instruction").addChild(
+                mkMask("1111", 0).addChildren(
+                        nest(mkPattern("0001"), mkVariant("a"),
+                                mkSubrule("argument", null, null, 4, argument)),
+                        nest(mkPattern("0010"), mkVariant("b")),
+                        nest(mkPattern("1111"), mkVariant("c"))
+                ));
+
+        long[] assigned = detect(8, rule).getAssigned();
+
+        assertArrayEquals(new long[]{1L << 0x1A | 0xFFFFL << 32, 0, 0, 0xFFFFL << 48}, assigned);
+    }
+
+    @Test
+    public void testChildrenOfZeroMaskAreExecuted() throws SemanticException {
+        Rule argument = (Rule) mkRule("argument").addChild(
+                mkMask("0000", 0).addChild(mkVariant("x")));
+        Rule rule = (Rule) mkRule("instruction").addChild(
+                mkMask("1111", 0).addChild(
+                        nest(mkPattern("0001"), mkVariant("a"),
+                                mkSubrule("argument", null, null, 4, argument))
+                ));
+
+        long[] assigned = detect(8, rule).getAssigned();
+
+        assertArrayEquals(new long[]{0xFFFFL << 16, 0, 0, 0}, assigned);
+    }
+
+    @Test
+    public void testRootRulesAreReportedSeparately() throws SemanticException {
+        Rule first = (Rule) mkRule("first").addChild(
+                mkMask("1111", 0).addChild(nest(mkPattern("0001"), mkVariant("a"))));
+        Rule second = (Rule) mkRule("second").addChild(
+                mkMask("1111", 0).addChildren(
+                        nest(mkPattern("0010"), mkVariant("b")),
+                        nest(mkPattern("0011"), mkVariant("c"))
+                ));
+
+        DetectOpcodeCoverageVisitor visitor = detect(4, first, second);
+
+        assertArrayEquals(new long[]{0b0010}, visitor.getAssigned(first));
+        assertArrayEquals(new long[]{0b1110}, visitor.getAssigned());
+        assertEquals("Opcode coverage of the first 4 bits:\n" +
+                "  first: 1 of 16 encodings assigned\n" +
+                "    unassigned: 0x0, 0x2-0xF\n" +
+                "  second: 2 of 16 encodings assigned\n" +
+                "    unassigned: 0x0-0x1, 0x4-0xF\n" +
+                "  total: 3 of 16 encodings assigned\n" +
+                "    unassigned: 0x0, 0x4-0xF\n", visitor.getReport());
+    }
+
+    private DetectOpcodeCoverageVisitor detect(int unitSize, Rule... rootRules) throws SemanticException {
+        String[] names = new String[rootRules.length];
+        for (int i = 0; i < rootRules.length; i++) {
+            names[i] = rootRules[i].getNames().get(0);
+        }
+
+        Decoder decoder = new Decoder(names);
+        decoder.setUnitSize(unitSize);
+        decoder.addChildren(rootRules);
+        decoder.setRootRules(new LinkedHashSet<>(Arrays.asList(rootRules)));
+
+        DetectOpcodeCoverageVisitor visitor = new DetectOpcodeCoverageVisitor();
+        decoder.accept(visitor);
+        return visitor;
+    }
+}
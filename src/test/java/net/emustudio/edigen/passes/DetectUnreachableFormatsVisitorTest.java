@@ -300,6 +300,21 @@ public class DetectUnreachableFormatsVisitorTest {
         ));
     }
 
+    @Test
+    public void testSubruleWithNonReturningVariantIsOptional() throws SemanticException {
+        Rule rb = (Rule) mkRule("B").addChildren(
+                mkVariant(),
+                mkVariant("b"));
+
+        rootRule.addChildren(
+                mkVariant("a").addChild(mkSubrule("B").setRule(rb)));
+        decoder.addChildren(rb);
+        runTest(Set.of(
+                Set.of("A"),
+                Set.of("A", "B")
+        ));
+    }
+
     private void runTest(Set<Set<String>> expected) throws SemanticException {
         DetectUnreachableFormatsVisitor visitor = new DetectUnreachableFormatsVisitor();
         visitor.visit(specification);
@@ -0,0 +1,137 @@
+/*
+ * This file is part of edigen.
+ *
+ * Copyright (C) 2011-2023 Matúš Sulír, Peter Jakubčo
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package net.emustudio.edigen.passes;
+
+import net.emustudio.edigen.SemanticException;
+import net.emustudio.edigen.nodes.Decoder;
+import net.emustudio.edigen.nodes.Rule;
+import net.emustudio.edigen.nodes.Variant;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import static net.emustudio.edigen.passes.PassUtils.*;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MergeRootRulesVisitorTest {
+
+    @Test
+    public void testMissingPatternsAreMerged() throws SemanticException {
+        Rule first = (Rule) mkRule("first").addChild(
+                mkMask("1111", 0).addChildren(
+                        nest(mkPattern("0001"), mkVariant("a")),
+                        nest(mkPattern("0010"), mkVariant("b"))
+                ));
+        Rule second = (Rule) mkRule("second").addChild(
+                mkMask("1111", 0).addChildren(
+                        nest(mkPattern("0010"), mkVariant("c")),
+                        nest(mkPattern("0100"), mkVariant("d"))
+                ));
+
+        Decoder decoder = mkDecoder(first, second);
+        decoder.accept(new MergeRootRulesVisitor());
+
+        assertTreesAreEqual(first, nest(
+                mkRule("first"),
+                mkMask("1111", 0).addChildren(
+                        nest(mkPattern("0001"), mkVariant("a")),
+                        nest(mkPattern("0010"), mkVariant("b")),
+                        nest(mkPattern("0100"), mkVariant("d"))
+                )
+        ));
+        assertNull(((Variant) first.getChild(0).getChild(1).getChild(0)).getOwner());
+        assertSame(second, ((Variant) first.getChild(0).getChild(2).getChild(0)).getOwner());
+        assertNull(((Variant) second.getChild(0).getChild(1).getChild(0)).getOwner());
+    }
+
+    @Test
+    public void testDifferentMasksAreNotMerged() throws SemanticException {
+        Rule first = (Rule) mkRule("first").addChild(
+                mkMask("1111", 0).addChild(nest(mkPattern("0001"), mkVariant("a"))));
+        Rule second = (Rule) mkRule("second").addChild(
+                mkMask("1100", 0).addChild(nest(mkPattern("0100"), mkVariant("b"))));
+
+        mkDecoder(first, second).accept(new MergeRootRulesVisitor());
+
+        assertTreesAreEqual(first, nest(
+                mkRule("first"),
+                mkMask("1111", 0),
+                mkPattern("0001"),
+                mkVariant("a")
+        ));
+    }
+
+    @Test
+    public void testMergingStopsAtDefaultPattern() throws SemanticException {
+        Rule first = (Rule) mkRule("first").addChild(
+                mkMask("11", 0).addChild(nest(mkPattern("00"), mkVariant("a"))));
+        Rule second = (Rule) mkRule("second").addChild(
+                mkMask("11", 0).addChildren(
+                        nest(mkPattern("01"), mkVariant("b")),
+                        nest(mkPattern(""), mkMask("1111", 0), mkPattern("1000"), mkVariant("c"))
+                ));
+        Rule third = (Rule) mkRule("third").addChild(
+                mkMask("11", 0).addChild(nest(mkPattern("10"), mkVariant("d"))));
+
+        mkDecoder(first, second, third).accept(new MergeRootRulesVisitor());
+
+        assertTreesAreEqual(first, nest(
+                mkRule("first"),
+                mkMask("11", 0).addChildren(
+                        nest(mkPattern("00"), mkVariant("a")),
+                        nest(mkPattern("01"), mkVariant("b"))
+                )
+        ));
+    }
+
+    @Test
+    public void testFirstRootWithDefaultPatternIsNotMerged() throws SemanticException {
+        Rule first = (Rule) mkRule("first").addChild(
+                mkMask("11", 0).addChildren(
+                        nest(mkPattern("00"), mkVariant("a")),
+                        nest(mkPattern(""), mkMask("1111", 0), mkPattern("0100"), mkVariant("b"))
+                ));
+        Rule second = (Rule) mkRule("second").addChild(
+                mkMask("11", 0).addChild(nest(mkPattern("10"), mkVariant("c"))));
+
+        mkDecoder(first, second).accept(new MergeRootRulesVisitor());
+
+        assertTreesAreEqual(first, nest(
+                mkRule("first"),
+                mkMask("11", 0).addChildren(
+                        nest(mkPattern("00"), mkVariant("a")),
+                        nest(mkPattern(""), mkMask("1111", 0), mkPattern("0100"), mkVariant("b"))
+                )
+        ));
+    }
+
+    private Decoder mkDecoder(Rule... rootRules) {
+        String[] names = new String[rootRules.length];
+        for (int i = 0; i < rootRules.length; i++) {
+            names[i] = rootRules[i].getNames().get(0);
+        }
+
+        Decoder decoder = new Decoder(names);
+        decoder.addChildren(rootRules);
+        decoder.setRootRules(new LinkedHashSet<>(Arrays.asList(rootRules)));
+        return decoder;
+    }
+}
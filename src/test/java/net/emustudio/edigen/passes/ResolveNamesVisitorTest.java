@@ -150,6 +150,28 @@ public class ResolveNamesVisitorTest {
         decoder.accept(new ResolveNamesVisitor());
     }
 
+    @Test
+    public void testFlowHasAssociatedTarget() throws SemanticException {
+        // rule = "jp" [jump target]: target(8);
+        variant.setReturnString("jp");
+        variant.setFlow(new Flow(Flow.Kind.JUMP, new Subrule("target"), false));
+        Subrule subrule = new Subrule("target", 8, null);
+        variant.addChild(subrule);
+
+        decoder.accept(new ResolveNamesVisitor());
+        assertSame(subrule, variant.getFlow().getTarget());
+    }
+
+    @Test(expected = SemanticException.class)
+    public void testFlowTargetMustBeSubruleOfVariant() throws SemanticException {
+        // rule = "jp" [jump target]: other(8);
+        variant.setReturnString("jp");
+        variant.setFlow(new Flow(Flow.Kind.JUMP, new Subrule("target"), false));
+        variant.addChild(new Subrule("other", 8, null));
+
+        decoder.accept(new ResolveNamesVisitor());
+    }
+
     @Test(expected = SemanticException.class)
     public void testDuplicateRuleAlternativeName() throws SemanticException {
         // instruction, src = ;
@@ -19,6 +19,7 @@
 package net.emustudio.edigen.passes;
 
 import net.emustudio.edigen.SemanticException;
+import net.emustudio.edigen.misc.BitSequence;
 import net.emustudio.edigen.nodes.*;
 import org.junit.Before;
 import org.junit.Test;
@@ -80,6 +81,41 @@ public class SemanticCheckVisitorTest {
         specification.accept(new SemanticCheckVisitor());
     }
 
+    @Test(expected = SemanticException.class)
+    public void testFlowOfVariantNotReturningStringThrows() throws SemanticException {
+        // rule = [stop]: ;
+        variant.setFlow(new Flow(Flow.Kind.STOP, null, false));
+        decoder.accept(new SemanticCheckVisitor());
+    }
+
+    @Test(expected = SemanticException.class)
+    public void testNonReturningFlowTargetThrows() throws SemanticException {
+        // rule = "jp" [jump target]: target(8);
+        // target = 0;
+        variant.setReturnString("jp");
+        variant.setFlow(new Flow(Flow.Kind.JUMP, new Subrule("target"), false));
+        variant.addChild(new Subrule("target", 8, null));
+        Rule target = new Rule("target");
+        Variant targetVariant = new Variant();
+        targetVariant.addChild(new Pattern(BitSequence.fromBinary("0")));
+        target.addChild(targetVariant);
+        decoder.addChild(target);
+
+        decoder.accept(new ResolveNamesVisitor());
+        decoder.accept(new SemanticCheckVisitor());
+    }
+
+    @Test
+    public void testReturningFlowTargetCanBeUsed() throws SemanticException {
+        // rule = "jp" [jump target]: target(8);
+        variant.setReturnString("jp");
+        variant.setFlow(new Flow(Flow.Kind.JUMP, new Subrule("target"), false));
+        variant.addChild(new Subrule("target", 8, null));
+
+        decoder.accept(new ResolveNamesVisitor());
+        decoder.accept(new SemanticCheckVisitor());
+    }
+
     @Test(expected = SemanticException.class)
     public void testTwoValuesUsedInFormatCannotBeTheSame() throws SemanticException {
         // rule = "at least something": ;
@@ -24,6 +24,7 @@ import net.emustudio.edigen.nodes.Rule;
 import org.junit.Before;
 import org.junit.Test;
 
+import static net.emustudio.edigen.nodes.Decoder.MAX_UNIT_SIZE_BITS;
 import static net.emustudio.edigen.nodes.Decoder.UNIT_SIZE_BITS;
 import static net.emustudio.edigen.passes.PassUtils.*;
 
@@ -110,4 +111,32 @@ public class SplitVisitorTest {
                 mkPattern("0")
         ));
     }
+
+    @Test
+    public void testMaskIsSplitByConfiguredUnitSize() throws SemanticException {
+        String maskPatternString = mkString(MAX_UNIT_SIZE_BITS + 8, '0');
+
+        Rule rule = nest(
+                mkRule("rule"),
+                mkVariant().addChildren(
+                        mkMask(maskPatternString),
+                        mkPattern(maskPatternString)
+                )
+        );
+
+        decoder.setUnitSize(MAX_UNIT_SIZE_BITS);
+        decoder.addChild(rule);
+        decoder.accept(new SplitVisitor());
+
+        String unitMaskPatternString = mkString(MAX_UNIT_SIZE_BITS, '0');
+        String restMaskPatternString = mkString(8, '0');
+        assertTreesAreEqual(rule, nest(
+                mkRule("rule"),
+                mkVariant(),
+                mkMask(unitMaskPatternString, 0),
+                mkPattern(unitMaskPatternString),
+                mkMask(restMaskPatternString, MAX_UNIT_SIZE_BITS),
+                mkPattern(restMaskPatternString)
+        ));
+    }
 }